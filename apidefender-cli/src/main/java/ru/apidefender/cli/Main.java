@@ -1,18 +1,24 @@
 package ru.apidefender.cli;
 
 import picocli.CommandLine;
+import ru.apidefender.cli.commands.MergeCommand;
+import ru.apidefender.cli.commands.ScanBatchCommand;
 import ru.apidefender.cli.commands.ScanCommand;
+import ru.apidefender.cli.commands.ServeCommand;
 
 public class Main {
     public static void main(String[] args) {
-        int exit = new CommandLine(new Root()).addSubcommand("scan", new ScanCommand()).execute(args);
+        int exit = new CommandLine(new Root()).addSubcommand("scan", new ScanCommand())
+                .addSubcommand("scan-batch", new ScanBatchCommand())
+                .addSubcommand("merge", new MergeCommand())
+                .addSubcommand("serve", new ServeCommand()).execute(args);
         System.exit(exit);
     }
 
     @CommandLine.Command(name = "apidefender", mixinStandardHelpOptions = true, version = "0.1.0",
             description = "CLI для аудита API (OpenAPI + OWASP)")
     static class Root implements Runnable {
-        @Override public void run() { System.out.println("Используйте подкоманду: scan"); }
+        @Override public void run() { System.out.println("Используйте подкоманду: scan, scan-batch, merge или serve"); }
     }
 }
 
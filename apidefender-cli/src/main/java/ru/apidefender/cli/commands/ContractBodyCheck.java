@@ -0,0 +1,69 @@
+package ru.apidefender.cli.commands;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import okhttp3.Headers;
+import ru.apidefender.core.http.ResponseSnapshot;
+import ru.apidefender.core.openapi.CompiledSchema;
+import ru.apidefender.core.openapi.OperationIndex;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+// Проверка JSON-тела ответа по схеме операции потоком, прямо с сокета: тело любого размера проверяется
+// без дерева и без обрезки лимитом снимка. Останавливается после maxErrors ошибок или maxBytes байт
+final class ContractBodyCheck implements ResponseSnapshot.BodyObserver {
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private final OperationIndex.Operation op;
+    private final int maxErrors;
+    private final long maxBytes;
+
+    final List<String> errs = new ArrayList<>();
+    boolean ran;
+    String invalidJson; // тело не разобралось как JSON
+    CompiledSchema.StreamResult result;
+
+    ContractBodyCheck(OperationIndex.Operation op, int maxErrors, long maxBytes) {
+        this.op = op;
+        this.maxErrors = maxErrors; this.maxBytes = maxBytes;
+    }
+
+    CompiledSchema schemaFor(int code) {
+        OperationIndex.Response r = op.response(code);
+        return r == null ? null : r.schema("application/json");
+    }
+
+    @Override
+    public void observe(int code, Headers headers, InputStream body) throws IOException {
+        String ctype = headers.get("Content-Type");
+        if (ctype == null || !ctype.contains("application/json")) return;
+        CompiledSchema schema = schemaFor(code);
+        if (schema == null) return;
+        try (JsonParser p = JSON.createParser(body)) {
+            run(schema, p);
+        }
+    }
+
+    // Проверка по уже снятому телу (ответ пришёл из кэша, запрос выполнял другой сканер)
+    void run(CompiledSchema schema, JsonParser p) throws IOException {
+        ran = true;
+        try {
+            result = schema.validate(p, "$.body", errs, maxErrors, maxBytes);
+        } catch (JsonProcessingException e) {
+            // ошибка разбора; обрыв соединения (прочие IOException) некорректным тело не делает
+            String msg = String.valueOf(e.getOriginalMessage()).split("\n")[0].replaceFirst(" \\(start marker.*", "");
+            invalidJson = e.getLocation() != null ? msg + " (байт " + e.getLocation().getByteOffset() + ")" : msg;
+        }
+    }
+
+    // Пометка о неполной проверке для текста несоответствия
+    String limitNote() {
+        if (result == null || result.complete()) return "";
+        if (result.errorLimit) return " (показаны первые " + maxErrors + " ошибок)";
+        return " (проверены первые " + (result.bytes / (1024 * 1024)) + " МБ тела)";
+    }
+}
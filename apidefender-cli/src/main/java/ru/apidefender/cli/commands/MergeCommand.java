@@ -0,0 +1,87 @@
+package ru.apidefender.cli.commands;
+
+import picocli.CommandLine;
+import ru.apidefender.core.log.JsonlLogger;
+import ru.apidefender.core.report.ReportMerger;
+import ru.apidefender.core.report.ReportModel;
+import ru.apidefender.core.report.ReportWriter;
+
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+@CommandLine.Command(name = "merge", description = "Слияние частичных отчётов (scan --shard i/N) в один")
+public class MergeCommand implements Callable<Integer> {
+    @CommandLine.Parameters(arity = "1..*", description = "Частичные JSON отчёты")
+    List<Path> parts;
+    @CommandLine.Option(names = "--report-html", description = "Путь к HTML отчёту", defaultValue = "/out/report.html")
+    Path reportHtml;
+    @CommandLine.Option(names = "--report-pdf", description = "Путь к PDF отчёту", defaultValue = "/out/report.pdf")
+    Path reportPdf;
+    @CommandLine.Option(names = "--no-pdf", description = "Не формировать PDF отчёт (стек PDF не загружается)", defaultValue = "false")
+    boolean noPdf;
+    @CommandLine.Option(names = "--report-json", description = "Путь к JSON отчёту", defaultValue = "/out/report.json")
+    Path reportJson;
+    @CommandLine.Option(names = "--save-traces", description = "Каталог, куда собираются трейсы всех частей", defaultValue = "/out/traces")
+    Path tracesDir;
+
+    @Override
+    public Integer call() throws Exception {
+        JsonlLogger log = new JsonlLogger(false);
+        ReportMerger merger = new ReportMerger();
+        Files.createDirectories(tracesDir);
+        int traces = 0;
+        for (Path file : parts) {
+            if (!Files.exists(file)) { log.error("Частичный отчёт не найден: " + file, null); return 2; }
+            ReportModel part = merger.read(file);
+            try {
+                merger.add(part);
+            } catch (IllegalArgumentException e) {
+                log.error(e.getMessage(), null);
+                return 2;
+            }
+            traces += copyTraces(part, file);
+            log.info("Добавлен отчёт " + file + (part.meta.shard != null ? " (шард " + part.meta.shard + ")" : ""));
+        }
+        ReportModel report = merger.result();
+        if (!report.coverage.missingShards.isEmpty()) {
+            log.error("Не хватает долей скана: " + String.join(", ", report.coverage.missingShards) + " — отчёт помечен неполным", null);
+        }
+        report.meta.tracesDir = tracesDir.toString();
+
+        ReportWriter writer = new ReportWriter();
+        writer.writeJson(report, reportJson);
+        writer.writeHtml(report, reportHtml);
+        if (!noPdf) writer.writePdf(report, reportPdf);
+        log.info("Слияние завершено. Частей: " + parts.size() + ", находок: " + report.security.size()
+                + ", несоответствий контракту: " + report.contract.mismatches.size() + ", трейсов: " + traces);
+        return 0;
+    }
+
+    // Каталог трейсов части берётся из её meta.tracesDir; если отчёт перенесён с другой машины (артефакт CI),
+    // каталог с тем же именем ищется рядом с файлом отчёта
+    private int copyTraces(ReportModel part, Path file) {
+        if (part.meta.tracesDir == null) return 0;
+        Path src = Path.of(part.meta.tracesDir);
+        if (!Files.isDirectory(src)) {
+            Path parent = file.toAbsolutePath().getParent();
+            src = parent == null ? src : parent.resolve(src.getFileName());
+        }
+        if (!Files.isDirectory(src)) return 0;
+        try {
+            if (Files.isSameFile(src, tracesDir)) return 0;
+        } catch (Exception ignored) {}
+        int n = 0;
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(src)) {
+            for (Path f : ds) {
+                Path dst = tracesDir.resolve(f.getFileName());
+                if (!Files.isRegularFile(f) || Files.exists(dst)) continue;
+                Files.copy(f, dst);
+                n++;
+            }
+        } catch (Exception ignored) {}
+        return n;
+    }
+}
@@ -0,0 +1,198 @@
+package ru.apidefender.cli.commands;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import picocli.CommandLine;
+import ru.apidefender.core.http.HttpTransport;
+import ru.apidefender.core.log.JsonlLogger;
+import ru.apidefender.core.openapi.OpenApiLoader;
+import ru.apidefender.core.report.ReportModel;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.*;
+
+// Пакетный режим: десятки целей в одной прогретой JVM. Цели идут параллельно (--parallel-targets) на общем
+// транспорте — пул соединений, Dispatcher и окно запросов (--max-in-flight) задают общий бюджет —
+// и общем пуле исполнителей; одинаковые спецификации разбираются один раз.
+// Каждая цель — обычный scan со своими отчётами, плюс общая сводка --summary-json
+@CommandLine.Command(name = "scan-batch", description = "Пакетное сканирование нескольких целей в одной JVM")
+public class ScanBatchCommand implements Callable<Integer> {
+    // Цель манифеста; пути относительно каталога манифеста, args — дополнительные опции scan
+    public static class Target {
+        public String name;
+        public String openapi;
+        public String baseUrl;
+        public String tokenFile;
+        public String outDir;
+        public List<String> args = new ArrayList<>();
+    }
+    public static class Manifest {
+        public List<String> args = new ArrayList<>(); // опции scan для всех целей (цель может переопределить)
+        public List<Target> targets = new ArrayList<>();
+    }
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class TargetSummary {
+        public String name;
+        public String target;
+        public int exitCode;
+        public String error;
+        public long durationMs;
+        public String reportJson;
+        public int issues;
+        public Map<String,Integer> bySeverity = new TreeMap<>();
+        public int contractMismatches;
+        public int undocumented;
+        public int requests;
+        public boolean coverageComplete;
+    }
+    public static class Summary {
+        public String startedAt;
+        public String finishedAt;
+        public long durationMs;
+        public int targets;
+        public int failed;
+        public int issues;
+        public Map<String,Integer> bySeverity = new TreeMap<>();
+        public List<TargetSummary> results = new ArrayList<>();
+    }
+
+    @CommandLine.Option(names = "--manifest", required = true, description = "Манифест целей (JSON/YAML)")
+    Path manifestFile;
+    @CommandLine.Option(names = "--parallel-targets", description = "Сколько целей сканируется одновременно", defaultValue = "4")
+    int parallelTargets;
+    @CommandLine.Mixin
+    TransportOptions transportOptions;
+    @CommandLine.Option(names = "--summary-json", description = "Путь к общей сводке по целям", defaultValue = "/out/batch-summary.json")
+    Path summaryJson;
+
+    @Override
+    public Integer call() throws Exception {
+        JsonlLogger log = new JsonlLogger(false);
+        if (!Files.exists(manifestFile)) { log.error("Манифест не найден: " + manifestFile, null); return 2; }
+        String content = Files.readString(manifestFile);
+        ObjectMapper mapper = (content.trim().startsWith("{") ? new ObjectMapper() : OpenApiLoader.yamlMapper())
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        Manifest manifest = mapper.readValue(content, Manifest.class);
+        Path baseDir = manifestFile.toAbsolutePath().getParent();
+        Instant started = Instant.now();
+        log.info("Пакетное сканирование: целей " + manifest.targets.size() + ", одновременно " + parallelTargets);
+
+        // Каталоги результатов: имя цели без outDir — один сегмент пути внутри каталога манифеста;
+        // две цели с одним каталогом затёрли бы отчёты и журнал друг друга, поэтому пакет не запускается
+        List<String> names = new ArrayList<>();
+        List<Path> outs = new ArrayList<>();
+        Map<Path, String> byOut = new HashMap<>();
+        int idx = 0;
+        for (Target t : manifest.targets) {
+            String name = t.name != null ? t.name : "target-" + (++idx);
+            if (t.outDir == null && !safeDirName(name)) {
+                log.error("Имя цели «" + name + "» не годится для каталога результатов: задайте outDir или имя без / \\ и «..»", null);
+                return 2;
+            }
+            Path out = resolve(baseDir, t.outDir != null ? t.outDir : name).toAbsolutePath().normalize();
+            String other = byOut.putIfAbsent(out, name);
+            if (other != null) {
+                log.error("Цели «" + other + "» и «" + name + "» пишут в один каталог " + out + ": задайте разные name или outDir", null);
+                return 2;
+            }
+            names.add(name);
+            outs.add(out);
+        }
+
+        HttpTransport transport = transportOptions.transport(parallelTargets);
+        ExecutorService pool = transportOptions.pool();
+        ScanCommand.Shared shared = new ScanCommand.Shared(transport, pool);
+
+        ExecutorService targets = Executors.newFixedThreadPool(Math.max(1, parallelTargets));
+        List<Future<TargetSummary>> futures = new ArrayList<>();
+        for (int i = 0; i < manifest.targets.size(); i++) {
+            String name = names.get(i);
+            List<String> args = scanArgs(manifest.targets.get(i), outs.get(i), manifest.args, baseDir, transportOptions);
+            futures.add(targets.submit(() -> runTarget(name, args, shared, log)));
+        }
+        Summary summary = new Summary();
+        summary.startedAt = started.toString();
+        for (Future<TargetSummary> f : futures) {
+            TargetSummary ts1 = f.get();
+            summary.results.add(ts1);
+            if (ts1.exitCode != 0) summary.failed++;
+            summary.issues += ts1.issues;
+            ts1.bySeverity.forEach((k, v) -> summary.bySeverity.merge(k, v, Integer::sum));
+        }
+        targets.shutdown();
+        pool.shutdownNow();
+        transport.shutdown();
+        Instant finished = Instant.now();
+        summary.targets = summary.results.size();
+        summary.finishedAt = finished.toString();
+        summary.durationMs = Duration.between(started, finished).toMillis();
+        if (summaryJson.getParent() != null) Files.createDirectories(summaryJson.getParent());
+        new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(summaryJson.toFile(), summary);
+        log.info("Пакетное сканирование завершено. Целей: " + summary.targets + ", с ошибкой: " + summary.failed
+                + ", находок: " + summary.issues + ", длительность: " + summary.durationMs + " мс");
+        return summary.failed == 0 ? 0 : 1;
+    }
+
+    // Аргументы обычного scan: входы и выходы цели, общий исполнитель, затем опции манифеста и самой цели
+    static List<String> scanArgs(Target t, Path out, List<String> common, Path baseDir, TransportOptions o) {
+        List<String> a = new ArrayList<>();
+        if (t.openapi != null) { a.add("--openapi"); a.add(resolve(baseDir, t.openapi).toString()); }
+        if (t.tokenFile != null) { a.add("--token-file"); a.add(resolve(baseDir, t.tokenFile).toString()); }
+        if (t.baseUrl != null) { a.add("--base-url"); a.add(t.baseUrl); }
+        a.addAll(List.of("--report-json", out.resolve("report.json").toString(),
+                "--report-html", out.resolve("report.html").toString(),
+                "--report-pdf", out.resolve("report.pdf").toString(),
+                "--save-traces", out.resolve("traces").toString(),
+                "--log-file", out.resolve("scan.log").toString(),
+                "--checkpoint", out.resolve("scan.journal").toString(),
+                "--executor", o.executor,
+                "--max-in-flight", Integer.toString(o.maxInFlight),
+                "--concurrency", Integer.toString(o.threads())));
+        a.addAll(common);
+        a.addAll(t.args);
+        return a;
+    }
+
+    private static boolean safeDirName(String name) {
+        return !name.isBlank() && !name.equals(".") && !name.equals("..") && name.indexOf('/') < 0 && name.indexOf('\\') < 0;
+    }
+
+    static Path resolve(Path baseDir, String p) {
+        Path path = Path.of(p);
+        return path.isAbsolute() || baseDir == null ? path : baseDir.resolve(path);
+    }
+
+    private TargetSummary runTarget(String name, List<String> args, ScanCommand.Shared shared, JsonlLogger log) {
+        TargetSummary s = new TargetSummary();
+        s.name = name;
+        long t0 = System.nanoTime();
+        try {
+            ScanCommand scan = new ScanCommand();
+            // опции манифеста и цели могут переопределять друг друга — побеждает последняя
+            new CommandLine(scan).setOverwrittenOptionsAllowed(true).parseArgs(args.toArray(new String[0]));
+            s.reportJson = scan.reportJson.toString();
+            s.exitCode = scan.run(shared);
+            ReportModel r = scan.result;
+            if (r != null) {
+                s.target = r.meta.target;
+                s.issues = r.security.size();
+                for (ReportModel.SecurityIssue si : r.security) s.bySeverity.merge(String.valueOf(si.severity), 1, Integer::sum);
+                s.contractMismatches = r.contract.mismatches.size();
+                s.undocumented = r.contract.undocumented.size();
+                s.requests = r.telemetry.requestsTotal;
+                s.coverageComplete = r.coverage.complete;
+            }
+        } catch (Exception e) {
+            s.exitCode = 1;
+            s.error = e.getClass().getSimpleName() + ": " + Optional.ofNullable(e.getMessage()).orElse("");
+            log.error("Ошибка сканирования цели " + name, e);
+        }
+        s.durationMs = (System.nanoTime() - t0) / 1_000_000L;
+        return s;
+    }
+}
@@ -2,15 +2,26 @@ package ru.apidefender.cli.commands;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import okhttp3.Response;
+import okhttp3.HttpUrl;
 import picocli.CommandLine;
 import ru.apidefender.core.Config;
 import ru.apidefender.core.http.HttpClient;
+import ru.apidefender.core.http.HttpTransport;
+import ru.apidefender.core.http.ResponseCache;
+import ru.apidefender.core.http.ResponseSnapshot;
+import ru.apidefender.core.http.ScanDeadline;
 import ru.apidefender.core.log.JsonlLogger;
+import ru.apidefender.core.openapi.CompiledSchema;
 import ru.apidefender.core.openapi.OpenApiLoader;
+import ru.apidefender.core.openapi.OperationIndex;
+import ru.apidefender.core.openapi.PathRouter;
 import ru.apidefender.core.report.ReportModel;
 import ru.apidefender.core.report.ReportWriter;
+import ru.apidefender.core.report.ScanJournal;
+import ru.apidefender.core.report.TracePolicy;
+import ru.apidefender.core.report.TraceStore;
 import ru.apidefender.core.risk.RiskAssessor;
+import ru.apidefender.scanners.ProbeScheduler;
 import ru.apidefender.scanners.SPI;
 import ru.apidefender.scanners.owasp.*;
 import ru.apidefender.scanners.simple.CorsHeadersScanner;
@@ -25,7 +36,6 @@ import java.util.concurrent.*;
 
 @CommandLine.Command(name = "scan", description = "Сканирование API: проверка контракта и OWASP")
 public class ScanCommand implements Callable<Integer> {
-    private static class Op { final String path; final String method; Op(String p,String m){this.path=p;this.method=m;} }
 
     @CommandLine.Option(names = "--openapi", description = "Путь к OpenAPI (JSON/YAML)", defaultValue = "/app/specs/openapi.json")
     Path openapi;
@@ -37,16 +47,73 @@ public class ScanCommand implements Callable<Integer> {
     String preset;
     @CommandLine.Option(names = "--timeout", description = "Таймаут выполнения (например, 5m)", defaultValue = "5m")
     String timeout;
+    @CommandLine.Option(names = "--request-timeout", description = "Таймаут одного запроса (не больше оставшегося времени скана)", defaultValue = "30s")
+    String requestTimeout;
     @CommandLine.Option(names = "--concurrency", description = "Число параллельных потоков")
     Integer concurrency;
+    @CommandLine.Option(names = "--executor", description = "Исполнитель задач: platform|virtual", defaultValue = "platform")
+    String executor;
+    @CommandLine.Option(names = "--max-idle-connections", description = "Максимум простаивающих соединений в общем пуле", defaultValue = "32")
+    int maxIdleConnections;
+    @CommandLine.Option(names = "--keep-alive", description = "Время жизни простаивающего соединения (например, 5m)", defaultValue = "5m")
+    String keepAlive;
+    @CommandLine.Option(names = "--max-requests-per-host", description = "Максимум одновременных запросов к одному хосту", defaultValue = "32")
+    int maxRequestsPerHost;
+    @CommandLine.Option(names = "--http-protocol", description = "Протокол: h1|h2|h2c", defaultValue = "h2")
+    String httpProtocol;
+    @CommandLine.Option(names = "--max-streams-per-connection", description = "Максимум одновременных потоков на одном соединении (0 = без ограничения)", defaultValue = "100")
+    int maxStreamsPerConnection;
+    @CommandLine.Option(names = "--rate-limit", description = "Потолок запросов в секунду на хост (0 = без потолка)", defaultValue = "0")
+    double rateLimit;
+    @CommandLine.Option(names = "--adaptive-rate-limit", description = "Снижать темп при 429/Retry-After и плавно восстанавливать", defaultValue = "true")
+    boolean adaptiveRateLimit;
+    @CommandLine.Option(names = "--max-in-flight", description = "Окно асинхронных запросов «в полёте»", defaultValue = "256")
+    int maxInFlight;
+    @CommandLine.Option(names = "--response-cache-mb", description = "Бюджет кэша эталонных GET-ответов на время скана, МБ тел (0 = выключен)", defaultValue = "64")
+    long responseCacheMb;
+    @CommandLine.Option(names = "--validate-max-errors", description = "Сколько ошибок схемы собирать с одного ответа", defaultValue = "50")
+    int validateMaxErrors;
+    @CommandLine.Option(names = "--validate-max-mb", description = "Сколько МБ тела ответа проверять по схеме (0 = без ограничения)", defaultValue = "64")
+    int validateMaxMb;
     @CommandLine.Option(names = "--report-html", description = "Путь к HTML отчёту", defaultValue = "/out/report.html")
     Path reportHtml;
     @CommandLine.Option(names = "--report-pdf", description = "Путь к PDF отчёту", defaultValue = "/out/report.pdf")
     Path reportPdf;
+    @CommandLine.Option(names = "--no-pdf", description = "Не формировать PDF отчёт (стек PDF не загружается)", defaultValue = "false")
+    boolean noPdf;
     @CommandLine.Option(names = "--report-json", description = "Путь к JSON отчёту", defaultValue = "/out/report.json")
     Path reportJson;
     @CommandLine.Option(names = "--save-traces", description = "Каталог для сохранения raw-трейсов", defaultValue = "/out/traces")
     Path tracesDir;
+    @CommandLine.Option(names = "--spec-cache", description = "Каталог двоичных снимков разобранных спецификаций", defaultValue = "/out/spec-cache")
+    Path specCache;
+    @CommandLine.Option(names = "--no-spec-cache", description = "Не использовать и не сохранять снимки спецификаций", defaultValue = "false")
+    boolean noSpecCache;
+    private PathRouter router; // шаблоны путей спецификации: трейсы привязываются к операции
+    private TraceStore traces; // сегменты трейсов этого скана
+    private JsonlLogger log;
+    private TracePolicy tracePolicy;
+    @CommandLine.Option(names = "--trace-budget-mb", description = "Бюджет трейсов скана, МБ до сжатия (0 = без ограничения)", defaultValue = "512")
+    long traceBudgetMb;
+    @CommandLine.Option(names = "--trace-sample", description = "Доля сохраняемых трейсов по категориям: contract|undocumented|finding=доля, через запятую", split = ",")
+    Map<String, Double> traceSample;
+    @CommandLine.Option(names = "--trace-bodies", description = "Полные тела в трейсах: all|findings (остальным — начало и конец тела)", defaultValue = "all")
+    String traceBodies;
+    @CommandLine.Option(names = "--trace-excerpt-bytes", description = "Сколько байт начала и конца тела оставлять в урезанном трейсе", defaultValue = "2048")
+    int traceExcerptBytes;
+    private String basePath = ""; // путь базового URL цели, перед путями спецификации
+    @CommandLine.Option(names = "--checkpoint", description = "Журнал контрольных точек (завершённые проверки и находки)", defaultValue = "/out/scan.journal")
+    Path checkpointFile;
+    @CommandLine.Option(names = "--resume", description = "Продолжить прерванный скан по журналу контрольных точек", defaultValue = "false")
+    boolean resume;
+    @CommandLine.Option(names = "--incremental", description = "Проверять только изменившиеся операции, остальное перенести из предыдущего отчёта", defaultValue = "false")
+    boolean incremental;
+    @CommandLine.Option(names = "--previous-report", description = "Предыдущий JSON отчёт для --incremental (по умолчанию — --report-json)")
+    Path previousReport;
+    @CommandLine.Option(names = "--reverify-after", description = "Через сколько перепроверять неизменившиеся операции (например, 7d)", defaultValue = "7d")
+    String reverifyAfter;
+    @CommandLine.Option(names = "--shard", description = "Доля работы этого процесса: i/N (i от 1 до N)")
+    String shard;
     @CommandLine.Option(names = "--log-level", description = "Уровень логирования: info|debug", defaultValue = "info")
     String logLevel;
     @CommandLine.Option(names = "--discover-undocumented", description = "Поиск неописанных эндпоинтов", defaultValue = "true")
@@ -78,34 +145,121 @@ public class ScanCommand implements Callable<Integer> {
     @CommandLine.Option(names = "--telemetry-opt-in", description = "Разрешить отправку анонимной телеметрии", defaultValue = "false")
     boolean telemetryOptIn;
 
-    private static JsonNode cachedSpecRoot;
+    ReportModel result; // итоговый отчёт — для сводки scan-batch
+
+    // Ресурсы, общие для сканов scan-batch и serve: транспорт (пул соединений, окно запросов), пул исполнителей
+    // и разобранные спецификации. Спецификация сверяется по времени изменения и размеру корневого файла
+    // и всех внешних файлов $ref: долгоживущий serve не отдаст устаревшую версию
+    static class Shared {
+        private static final int MAX_SPECS = 32;
+        final HttpTransport transport;
+        final ExecutorService pool;
+        private final java.util.concurrent.locks.ReentrantLock lock = new java.util.concurrent.locks.ReentrantLock();
+        private record Entry(OpenApiLoader.LoadedSpec spec, String stamp) {}
+        private final Map<Path, Entry> specs = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override protected boolean removeEldestEntry(Map.Entry<Path, Entry> e) { return size() > MAX_SPECS; }
+        };
+        Shared(HttpTransport transport, ExecutorService pool) { this.transport = transport; this.pool = pool; }
+
+        OpenApiLoader.LoadedSpec spec(Path file, OpenApiLoader loader) throws java.io.IOException {
+            Path p = file.toAbsolutePath().normalize();
+            Entry cached;
+            lock.lock();
+            try {
+                cached = specs.get(p);
+            } finally {
+                lock.unlock();
+            }
+            if (cached != null && cached.stamp.equals(stamp(cached.spec.inputs))) return cached.spec;
+            OpenApiLoader.LoadedSpec loaded = loader.load(p);
+            lock.lock();
+            try {
+                specs.put(p, new Entry(loaded, stamp(loaded.inputs)));
+            } finally {
+                lock.unlock();
+            }
+            return loaded;
+        }
+
+        private static String stamp(List<Path> files) {
+            StringBuilder sb = new StringBuilder();
+            for (Path f : files) {
+                try {
+                    sb.append(Files.getLastModifiedTime(f).toMillis()).append(':').append(Files.size(f)).append('|');
+                } catch (java.io.IOException e) {
+                    sb.append("-|");
+                }
+            }
+            return sb.toString();
+        }
+    }
+
+    // Наблюдатель хода скана (serve): получает срок, планировщик и отчёт, как только они созданы
+    interface Monitor { void started(ScanDeadline deadline, ProbeScheduler scheduler, ReportModel report); }
+    Monitor monitor;
+    private static final long SHUTDOWN_GRACE_MS = 2_000L;
 
-    private static Duration parseDuration(String s) {
+    static Duration parseDuration(String s) {
         if (s.endsWith("ms")) return Duration.ofMillis(Long.parseLong(s.substring(0, s.length()-2)));
         if (s.endsWith("s")) return Duration.ofSeconds(Long.parseLong(s.substring(0, s.length()-1)));
         if (s.endsWith("m")) return Duration.ofMinutes(Long.parseLong(s.substring(0, s.length()-1)));
         if (s.endsWith("h")) return Duration.ofHours(Long.parseLong(s.substring(0, s.length()-1)));
+        if (s.endsWith("d")) return Duration.ofDays(Long.parseLong(s.substring(0, s.length()-1)));
         return Duration.ofMinutes(5);
     }
 
     @Override
     public Integer call() throws Exception {
+        return run(null);
+    }
+
+    Integer run(Shared shared) throws Exception {
+        try {
+            return scan(shared);
+        } finally {
+            if (traces != null) traces.close();
+            // scan-batch и serve создают скан на каждую цель: поток записи журнала завершается вместе со сканом
+            if (log != null) log.close();
+        }
+    }
+
+    private Integer scan(Shared shared) throws Exception {
         boolean debug = Objects.equals(logLevel, "debug") || debugFlag;
-        JsonlLogger log = new JsonlLogger(debug, logFile);
+        log = new JsonlLogger(debug, logFile);
         Instant started = Instant.now();
         log.info("Начало сканирования: базовый URL=" + (baseUrl!=null? baseUrl: "(из OpenAPI)") + ", пресет="+preset);
 
         // Verify input files exist and compute line counts
         if (openapi == null || !java.nio.file.Files.exists(openapi)) { log.error("OpenAPI file not found: " + String.valueOf(openapi), null); return 2; }
         if (tokenFile == null || !java.nio.file.Files.exists(tokenFile)) { log.error("Token file not found: " + String.valueOf(tokenFile), null); return 2; }
-        long openapiLines = 0L; long tokenLines = 0L;
-        try (java.io.BufferedReader br = java.nio.file.Files.newBufferedReader(openapi)) { openapiLines = br.lines().count(); } catch (Exception ignored) {}
+        long tokenLines = 0L;
         try (java.io.BufferedReader br = java.nio.file.Files.newBufferedReader(tokenFile)) { tokenLines = br.lines().count(); } catch (Exception ignored) {}
 
-        OpenApiLoader loader = new OpenApiLoader();
-        OpenApiLoader.LoadedSpec spec = loader.load(openapi);
+        int shardIndex = 0, shardTotal = 1;
+        if (shard != null) {
+            String[] sp = shard.split("/");
+            try { shardIndex = Integer.parseInt(sp[0].trim()) - 1; shardTotal = Integer.parseInt(sp[1].trim()); } catch (Exception e) { shardTotal = 0; }
+            if (sp.length != 2 || shardTotal < 1 || shardIndex < 0 || shardIndex >= shardTotal) {
+                log.error("Неверный --shard: " + shard + " (ожидается i/N, 1 <= i <= N)", null);
+                return 2;
+            }
+        }
+
+        if (traceSample != null) {
+            for (Map.Entry<String, Double> e : traceSample.entrySet()) {
+                if (!List.of(TracePolicy.CONTRACT, TracePolicy.UNDOCUMENTED, TracePolicy.FINDING).contains(e.getKey()) || e.getValue() < 0 || e.getValue() > 1) {
+                    log.error("Неверный --trace-sample: " + e.getKey() + "=" + e.getValue() + " (ожидается contract|undocumented|finding=доля от 0 до 1)", null);
+                    return 2;
+                }
+            }
+        }
+
+        OpenApiLoader loader = new OpenApiLoader(noSpecCache ? null : specCache);
+        OpenApiLoader.LoadedSpec spec = shared == null ? loader.load(openapi) : shared.spec(openapi, loader);
         String targetBase = baseUrl != null? baseUrl: Optional.ofNullable(spec.firstServerUrl).orElse("http://localhost:8080");
-        cachedSpecRoot = spec.root;
+        router = spec.router;
+        HttpUrl base = HttpUrl.parse(targetBase);
+        if (base != null) basePath = base.encodedPath().replaceAll("/+$", "");
 
         Config.Preset pr = switch (preset.toLowerCase()) {
             case "fast" -> Config.Preset.FAST;
@@ -116,30 +270,36 @@ public class ScanCommand implements Callable<Integer> {
         int threads = concurrency != null? concurrency: Math.max(2, Runtime.getRuntime().availableProcessors());
 
         String token = Files.readString(tokenFile).trim();
-        log.info("Input files verified: openapiLines=" + openapiLines + ", tokenLines=" + tokenLines);
-        Files.createDirectories(tracesDir);
-
-        HttpClient http = new HttpClient(dur, token, maskSecrets);
+        log.info("Input files verified: openapiLines=" + spec.lines + ", tokenLines=" + tokenLines);
+        traces = new TraceStore(tracesDir);
+        tracePolicy = new TracePolicy(traceBudgetMb * 1024L * 1024L, traceSample, "findings".equalsIgnoreCase(traceBodies), traceExcerptBytes);
+
+        HttpTransport.Settings ts = new HttpTransport.Settings();
+        ts.maxIdleConnections = maxIdleConnections;
+        ts.keepAlive = parseDuration(keepAlive);
+        ts.maxRequestsPerHost = maxRequestsPerHost;
+        ts.maxRequests = Math.max(ts.maxRequests, maxRequestsPerHost);
+        ts.maxInFlight = maxInFlight;
+        ts.protocol = httpProtocol;
+        ts.maxStreamsPerConnection = maxStreamsPerConnection;
+        ts.rateLimitRps = rateLimit;
+        ts.adaptiveRateLimit = adaptiveRateLimit;
+        HttpTransport transport = shared != null ? shared.transport.forTarget() : HttpTransport.shared(ts);
+        ResponseCache responseCache = responseCacheMb > 0 ? new ResponseCache(responseCacheMb * 1024L * 1024L) : null;
+        // Срок скана отсчитывается отсюда; каждый запрос получает min(--request-timeout, оставшееся время)
+        ScanDeadline deadline = new ScanDeadline(dur);
+        HttpClient http = new HttpClient(transport, parseDuration(requestTimeout), token, maskSecrets)
+                .withCache(responseCache).withDeadline(deadline);
         ReportModel report = new ReportModel();
         report.meta.startedAt = started.toString();
         report.meta.preset = pr.name().toLowerCase();
         report.meta.target = targetBase;
         report.meta.openapiVersion = spec.version;
         report.meta.tracesDir = tracesDir.toString();
+        if (shardTotal > 1) report.meta.shard = (shardIndex + 1) + "/" + shardTotal;
 
-        ExecutorService pool = Executors.newFixedThreadPool(threads);
-        List<Callable<Void>> tasks = new ArrayList<>();
-
-        List<String> endpoints = new ArrayList<>();
-        if (spec.root.has("paths")) {
-            spec.root.get("paths").fieldNames().forEachRemaining(endpoints::add);
-        }
-        List<Op> ops = new ArrayList<>();
-        String[] allMethods = new String[]{"get","post","put","patch","delete","head","options","trace"};
-        for (String p : endpoints) {
-            JsonNode node = spec.root.path("paths").path(p);
-            for (String m : allMethods) if (node.has(m)) ops.add(new Op(p, m));
-        }
+        List<String> endpoints = spec.operations.paths();
+        List<OperationIndex.Operation> ops = new ArrayList<>(spec.operations.operations());
         // приоритизация «чувствительных» ручек
         List<String> hot = List.of("auth","user","account","payment","transfer","card","token","admin","secret");
         ops.sort((a,b)->{
@@ -147,71 +307,119 @@ public class ScanCommand implements Callable<Integer> {
             int sb = scoreOp(b.path, b.method, hot);
             return Integer.compare(sb, sa);
         });
+        // Шардирование: приоритизированные операции и пути делятся между процессами по кругу — у каждого
+        // процесса своя доля «горячих» ручек, а разбиение зависит только от спецификации
+        Set<String> ownedOps = new LinkedHashSet<>();
+        for (int i = 0; i < ops.size(); i++) if (i % shardTotal == shardIndex) ownedOps.add(ops.get(i).key);
+        Set<String> ownedPaths = new LinkedHashSet<>();
+        for (int i = 0; i < endpoints.size(); i++) if (i % shardTotal == shardIndex) ownedPaths.add(endpoints.get(i));
+
+        // Инкрементальный режим: операции с прежним хэшем и недавней проверкой не сканируются,
+        // их результаты переносятся из предыдущего отчёта
+        ReportModel previous = incremental ? loadPrevious(previousReport != null ? previousReport : reportJson, targetBase, pr, log) : null;
+        Set<String> rescan = new HashSet<>(spec.operationHashes.keySet());
+        List<ReportModel.SecurityIssue> carried = List.of();
+        if (previous != null) {
+            Instant reverifyBefore = started.minus(parseDuration(reverifyAfter));
+            rescan.clear();
+            spec.operationHashes.forEach((op, hash) -> {
+                ReportModel.OperationState st = previous.operations.get(op);
+                if (st == null || !hash.equals(st.hash) || st.verifiedAt == null || Instant.parse(st.verifiedAt).isBefore(reverifyBefore)) rescan.add(op);
+            });
+            carried = carryForward(previous, report, ownedOps, ownedPaths, new HashSet<>(discoveryCandidates(endpoints, pr, shardIndex, shardTotal)),
+                    spec.router, shardIndex == 0, rescan);
+            log.info("Инкрементальный скан: к проверке операций " + rescan.size() + " из " + spec.operationHashes.size()
+                    + ", перенесено находок " + (carried.size() + report.contract.mismatches.size() + report.contract.undocumented.size()));
+        }
+        Set<String> rescanPaths = new HashSet<>();
+        for (String op : rescan) rescanPaths.add(op.substring(op.indexOf(' ') + 1));
+
+        // Журнал привязан к цели, пресету и содержимому спецификации; чужой журнал при --resume не используется
+        String fingerprint = targetBase + "|" + pr.name() + "|" + (shardIndex + 1) + "/" + shardTotal + "|" + spec.contentHash;
+        ScanJournal journal = ScanJournal.open(checkpointFile, fingerprint, resume, report);
+        if (journal.resumeRejected()) {
+            log.info("Журнал " + checkpointFile + " относится к другому скану — начинаем заново");
+        } else if (resume) {
+            log.info("Возобновление скана: завершённых проверок в журнале " + journal.restoredUnits() + ", восстановлено находок " + journal.restoredFindings());
+        }
 
-        for (Op op : ops) {
-            final String p = op.path; final String m = op.method; final String methodUpper = m.toUpperCase();
-            tasks.add(() -> {
+        // Проверки контракта, discovery и пробы сканеров — единицы общего планировщика с очередью на каждого сканера.
+        // platform: work-stealing ForkJoinPool на threads потоков; virtual: виртуальный поток на единицу,
+        // параллелизм ограничивает окно запросов (--max-in-flight)
+        boolean virtual = "virtual".equalsIgnoreCase(executor);
+        ExecutorService pool = shared != null ? shared.pool : virtual ? Executors.newVirtualThreadPerTaskExecutor() : new ForkJoinPool(threads);
+        ProbeScheduler scheduler = new ProbeScheduler(pool, virtual ? maxInFlight : threads, deadline, journal);
+        List<CompletableFuture<Void>> units = new ArrayList<>();
+        if (monitor != null) monitor.started(deadline, scheduler, report);
+
+        ops.removeIf(op -> !ownedOps.contains(op.key) || !rescan.contains(op.key));
+
+        HttpClient contractHttp = http.forScanner("Contract");
+        for (OperationIndex.Operation op : ops) {
+            final String p = op.path; final String methodUpper = op.method;
+            units.add(scheduler.submit("Contract", methodUpper + " " + p, () -> {
                 String url = (targetBase.endsWith("/")? targetBase.substring(0, targetBase.length()-1): targetBase) + (p.startsWith("/")? p: "/"+p);
                 long t0 = System.nanoTime();
-                try (Response r = http.request(methodUpper, url, null, null)) {
+                try {
+                    // JSON-тело проверяется по схеме потоком, пока читается с сокета
+                    ContractBodyCheck check = new ContractBodyCheck(op, validateMaxErrors, validateMaxMb * 1024L * 1024L);
+                    ResponseSnapshot r = "GET".equals(methodUpper) ? contractHttp.requestCached(url, check) : contractHttp.request(methodUpper, url, null, null, check);
                     long dt = (System.nanoTime()-t0)/1_000_000L;
-                    synchronized (report) {
-                        report.telemetry.requestsTotal++;
-                        report.telemetry.avgLatencyMs += dt;
-                    }
+                    report.recordRequest(dt);
                     int code = r.code();
-                    JsonNode respNode = spec.root.path("paths").path(p).path(m).path("responses");
-                    boolean inSpec = respNode.has(Integer.toString(code)) || respNode.has("default");
-                    if (!inSpec) {
+                    OperationIndex.Response target = op.response(code);
+                    if (target == null) {
                         ReportModel.ContractMismatch cm = new ReportModel.ContractMismatch();
                         cm.endpoint = p; cm.method = methodUpper;
                         cm.issue = "Код ответа не описан в OpenAPI: "+code;
                         cm.evidence = "response.status="+code;
-                        cm.traceRef = saveFullTrace(url, methodUpper, null, r);
-                        synchronized (report.contract.mismatches){ report.contract.mismatches.add(cm);} 
+                        cm.traceRef = saveFullTrace(TracePolicy.CONTRACT, url, methodUpper, null, r);
+                        report.addMismatch(cm);
                     } else {
-                        JsonNode target = respNode.has(Integer.toString(code)) ? respNode.get(Integer.toString(code)) : respNode.get("default");
-                        JsonNode content = target.path("content");
-                        if (content.isMissingNode() || content.isNull() || !content.fieldNames().hasNext()) {
+                        if (target.content.isEmpty()) {
                             ReportModel.ContractMismatch cm = new ReportModel.ContractMismatch();
                             cm.endpoint = p; cm.method = methodUpper;
                             cm.issue = "Предупреждение: отсутствует content/schema в OpenAPI для кода " + code;
                             cm.evidence = "response.status="+code;
-                            cm.traceRef = saveFullTrace(url, methodUpper, null, r);
-                            synchronized (report.contract.mismatches){ report.contract.mismatches.add(cm);} 
+                            cm.traceRef = saveFullTrace(TracePolicy.CONTRACT, url, methodUpper, null, r);
+                            report.addMismatch(cm);
                         } else {
                             String ctype = r.header("Content-Type");
-                            boolean ctypeDescribed = false;
-                            if (ctype != null) {
-                                Iterator<String> it = content.fieldNames();
-                                while (it.hasNext()) { if (ctype.contains(it.next())) { ctypeDescribed = true; break; } }
-                            }
-                            if (ctype != null && !ctypeDescribed) {
+                            if (ctype != null && !target.describes(ctype)) {
                                 ReportModel.ContractMismatch cm = new ReportModel.ContractMismatch();
                                 cm.endpoint = p; cm.method = methodUpper;
                                 cm.issue = "Неверный Content-Type: не описан в OpenAPI: " + ctype;
                                 cm.evidence = "content-type="+ctype;
-                                cm.traceRef = saveFullTrace(url, methodUpper, null, r);
-                                synchronized (report.contract.mismatches){ report.contract.mismatches.add(cm);} 
+                                cm.traceRef = saveFullTrace(TracePolicy.CONTRACT, url, methodUpper, null, r);
+                                report.addMismatch(cm);
                             }
                             if (ctype != null && ctype.contains("application/json")) {
-                                JsonNode jsonSchema = content.path("application/json").path("schema");
-                                if (!jsonSchema.isMissingNode()) {
+                                CompiledSchema jsonSchema = check.schemaFor(code);
+                                if (jsonSchema != null) {
                                     try {
-                                        String body = r.peekBody(5_000_000).string();
-                                        ObjectMapper mapper = new ObjectMapper();
-                                        JsonNode node = mapper.readTree(body);
-                                        List<String> errs = new ArrayList<>();
-                                        validateJson(node, jsonSchema, "$.body", errs);
-                                        if (!errs.isEmpty()) {
+                                        if (!check.ran) {
+                                            // ответ взят из кэша: проверяем снятое тело, а обрезанное лимитом снимка — повторным потоковым GET
+                                            if (r.truncated()) contractHttp.request("GET", url, null, null, check);
+                                            else try (com.fasterxml.jackson.core.JsonParser jp = r.jsonParser()) { check.run(jsonSchema, jp); }
+                                        }
+                                        if (check.invalidJson != null) {
                                             ReportModel.ContractMismatch cm = new ReportModel.ContractMismatch();
                                             cm.endpoint = p; cm.method = methodUpper;
-                                            cm.issue = "Нарушение схемы ответа: " + String.join("; ", errs);
+                                            cm.issue = "Тело ответа не является корректным JSON: " + check.invalidJson;
                                             cm.evidence = "content-type=application/json";
-                                            cm.traceRef = saveFullTrace(url, methodUpper, null, r);
-                                            synchronized (report.contract.mismatches){ report.contract.mismatches.add(cm);} 
+                                            cm.traceRef = saveFullTrace(TracePolicy.CONTRACT, url, methodUpper, null, r);
+                                            report.addMismatch(cm);
+                                        } else if (!check.errs.isEmpty()) {
+                                            ReportModel.ContractMismatch cm = new ReportModel.ContractMismatch();
+                                            cm.endpoint = p; cm.method = methodUpper;
+                                            cm.issue = "Нарушение схемы ответа: " + String.join("; ", check.errs) + check.limitNote();
+                                            cm.evidence = "content-type=application/json";
+                                            cm.traceRef = saveFullTrace(TracePolicy.CONTRACT, url, methodUpper, null, r);
+                                            report.addMismatch(cm);
                                         }
-                                        if (code >= 400 && content.has("application/problem+json")) {
+                                        // тела ошибок небольшие — их поля проверяются по дереву
+                                        JsonNode node = code >= 400 && target.content.containsKey("application/problem+json") ? r.json() : null;
+                                        if (node != null) {
                                             List<String> perrs = new ArrayList<>();
                                             if (!node.has("title")) perrs.add("нет title");
                                             if (!node.has("status")) perrs.add("нет status");
@@ -220,8 +428,8 @@ public class ScanCommand implements Callable<Integer> {
                                                 cm.endpoint = p; cm.method = methodUpper;
                                                 cm.issue = "Неверный problem+json: " + String.join(", ", perrs);
                                                 cm.evidence = "application/problem+json";
-                                                cm.traceRef = saveFullTrace(url, methodUpper, null, r);
-                                                synchronized (report.contract.mismatches){ report.contract.mismatches.add(cm);} 
+                                                cm.traceRef = saveFullTrace(TracePolicy.CONTRACT, url, methodUpper, null, r);
+                                                report.addMismatch(cm);
                                             }
                                         }
                                     } catch (Exception ignored) { }
@@ -230,99 +438,70 @@ public class ScanCommand implements Callable<Integer> {
                                     cm.endpoint = p; cm.method = methodUpper;
                                     cm.issue = "Предупреждение: отсутствует schema для application/json";
                                     cm.evidence = "content-type=application/json";
-                                    cm.traceRef = saveFullTrace(url, methodUpper, null, r);
-                                    synchronized (report.contract.mismatches){ report.contract.mismatches.add(cm);} 
+                                    cm.traceRef = saveFullTrace(TracePolicy.CONTRACT, url, methodUpper, null, r);
+                                    report.addMismatch(cm);
                                 }
                             }
-                            JsonNode reqHeaders = target.path("headers");
-                            if (reqHeaders.isObject()) {
-                                Iterator<String> it = reqHeaders.fieldNames();
-                                while (it.hasNext()) {
-                                    String h = it.next();
-                                    if (r.header(h) == null) {
-                                        ReportModel.ContractMismatch cm = new ReportModel.ContractMismatch();
-                                        cm.endpoint = p; cm.method = methodUpper;
-                                        cm.issue = "Отсутствует обязательный заголовок ответа: "+h;
-                                        cm.evidence = "headers."+h+"=<none>";
-                                        cm.traceRef = saveFullTrace(url, methodUpper, null, r);
-                                        synchronized (report.contract.mismatches){ report.contract.mismatches.add(cm);} 
-                                    }
+                            for (String h : target.headers) {
+                                if (r.header(h) == null) {
+                                    ReportModel.ContractMismatch cm = new ReportModel.ContractMismatch();
+                                    cm.endpoint = p; cm.method = methodUpper;
+                                    cm.issue = "Отсутствует обязательный заголовок ответа: "+h;
+                                    cm.evidence = "headers."+h+"=<none>";
+                                    cm.traceRef = saveFullTrace(TracePolicy.CONTRACT, url, methodUpper, null, r);
+                                    report.addMismatch(cm);
                                 }
                             }
                         }
                     }
                 } catch (Exception e) {
+                    if (deadline.isCancelled()) return; // прерван сроком скана — это не дефект контракта
                     ReportModel.ContractMismatch cm = new ReportModel.ContractMismatch();
                     cm.endpoint = p; cm.method = methodUpper;
                     cm.issue = "Ошибка запроса: "+ e.getClass().getSimpleName();
                     cm.evidence = Optional.ofNullable(e.getMessage()).orElse("");
                     cm.traceRef = UUID.randomUUID().toString();
-                    synchronized (report.contract.mismatches){ report.contract.mismatches.add(cm);} 
+                    report.addMismatch(cm);
                 }
-                return null;
-            });
+            }));
         }
 
-        if (discoverUndocumented) {
-            Set<String> known = new HashSet<>();
-            spec.root.path("paths").fieldNames().forEachRemaining(known::add);
-            Set<String> candidates = new LinkedHashSet<>();
-            // словарь общих путей
-            List<String> common = List.of(
-                    "/actuator", "/actuator/health", "/actuator/info", "/actuator/env", "/actuator/metrics", "/actuator/beans", "/actuator/loggers", "/actuator/mappings",
-                    "/admin", "/admin/health", "/admin/info", "/internal", "/internal/status", "/internal/metrics",
-                    "/status", "/metrics", "/manage", "/management", "/health", "/version", "/info", "/env", "/logs",
-                    "/swagger-ui", "/swagger-ui/index.html", "/swagger.json", "/swagger/v1/swagger.json", "/openapi", "/openapi.json", "/v3/api-docs", "/v3/api-docs.yaml",
-                    "/graphql", "/graphiql", "/voyager", "/playground",
-                    "/.well-known/openid-configuration", "/.well-known/security.txt"
-            );
-            candidates.addAll(common);
-            // на основе OpenAPI — собрать корневые сегменты и их вариации
-            Set<String> roots = new HashSet<>();
-            for (String p : endpoints) {
-                String seg = p.startsWith("/")? p.substring(1): p;
-                int idx = seg.indexOf('/'); if (idx>0) seg = seg.substring(0, idx);
-                if (!seg.isBlank()) roots.add(seg);
-            }
-            List<String> suffixes = List.of("/health","/status","/metrics","/debug","/internal","/admin","/v1","/v2","/info");
-            for (String rseg : roots) {
-                for (String sfx : suffixes) candidates.add("/"+rseg+sfx);
-            }
-            // лимит по профилю
-            int maxProbe = switch (pr) { case FAST -> 30; case AGGRESSIVE -> 200; default -> 80; };
-            int[] count = {0};
-            for (String p : candidates) {
-                if (count[0]++ >= maxProbe) break;
-                tasks.add(() -> {
+        // discovery зависит от набора путей целиком: без изменений её результаты перенесены из предыдущего отчёта
+        if (discoverUndocumented && (previous == null || !rescan.isEmpty())) {
+            HttpClient discoveryHttp = http.forScanner("Discovery");
+            for (String p : discoveryCandidates(endpoints, pr, shardIndex, shardTotal)) {
+                units.add(scheduler.submit("Discovery", "GET " + p, () -> {
                     String url = (targetBase.endsWith("/")? targetBase.substring(0, targetBase.length()-1): targetBase) + p;
-                    try (Response r = http.request("GET", url, null, null)) {
-                        if (r.code() != 404 && !known.contains(p)) {
+                    try {
+                        ResponseSnapshot r = discoveryHttp.request("GET", url, null, null);
+                        if (r.code() != 404 && !documented(p, "GET", r.code())) {
                             ReportModel.Undocumented u = new ReportModel.Undocumented();
                             u.path = p; u.method = "GET"; u.status = r.code();
                             u.evidence = "GET "+p+" => "+r.code();
-                            u.traceRef = saveFullTrace(url, "GET", null, r);
-                            synchronized (report.contract.undocumented){ report.contract.undocumented.add(u);} 
+                            u.traceRef = saveFullTrace(TracePolicy.UNDOCUMENTED, url, "GET", null, r);
+                            report.addUndocumented(u);
                         }
                     } catch (Exception ignored) {}
-                    return null;
-                });
-                tasks.add(() -> {
+                }));
+                units.add(scheduler.submit("Discovery", "OPTIONS " + p, () -> {
                     String url = (targetBase.endsWith("/")? targetBase.substring(0, targetBase.length()-1): targetBase) + p;
-                    try (Response r = http.request("OPTIONS", url, null, null)) {
-                        if (r.code() >= 200 && r.code() < 500 && !known.contains(p)) {
+                    try {
+                        ResponseSnapshot r = discoveryHttp.request("OPTIONS", url, null, null);
+                        if (r.code() >= 200 && r.code() < 500 && !documented(p, "OPTIONS", r.code())) {
                             ReportModel.Undocumented u = new ReportModel.Undocumented();
                             u.path = p; u.method = "OPTIONS"; u.status = r.code();
                             u.evidence = "OPTIONS "+p+" => "+r.code();
-                            u.traceRef = saveFullTrace(url, "OPTIONS", null, r);
-                            synchronized (report.contract.undocumented){ report.contract.undocumented.add(u);} 
+                            u.traceRef = saveFullTrace(TracePolicy.UNDOCUMENTED, url, "OPTIONS", null, r);
+                            report.addUndocumented(u);
                         }
                     } catch (Exception ignored) {}
-                    return null;
-                });
+                }));
             }
         }
 
-        List<SPI> scanners = List.of(
+        // сканеры работают по путям: путь проверяется, если изменилась хотя бы одна его операция
+        List<String> scanEndpoints = endpoints.stream().filter(p -> ownedPaths.contains(p) && (previous == null || rescanPaths.contains(p))).toList();
+        List<SPI> scanners = scanEndpoints.isEmpty() && previous != null ? List.of() : List.of(
                 new CorsHeadersScanner(),
                 new SecurityHeadersScanner(),
                 new WeakAuthScanner(),
@@ -343,40 +522,90 @@ public class ScanCommand implements Callable<Integer> {
         report.telemetry.presetParams.put("idorMax", idorMax);
         report.telemetry.presetParams.put("injectionOps", injOps);
         report.telemetry.presetParams.put("rateBurst", burst);
+        report.telemetry.presetParams.put("executor", virtual ? "virtual" : "platform");
         if (publicPaths == null) publicPaths = new ArrayList<>();
         String depth = exploitDepth;
         if (depth == null || depth.isBlank()) {
             depth = switch (pr) { case FAST -> "low"; case AGGRESSIVE -> "high"; default -> "med"; };
         }
-        SPI.ScanContext sctx = new SPI.ScanContext(targetBase, http, log, report, debug, spec.root, endpoints, pr.name().toLowerCase(), idorMax, injOps, burst,
-                (url, method, reqBody, resp) -> saveFullTrace(url, method, reqBody, resp), publicPaths, allowCorsWildcardPublic,
-                depth, maxExploitOps, safetySkipDelete);
+        SPI.ScanContext sctx = new SPI.ScanContext(targetBase, http, log, report, debug, spec.root, spec.operations, scanEndpoints, pr.name().toLowerCase(), idorMax, injOps, burst,
+                (url, method, reqBody, resp) -> saveFullTrace(TracePolicy.FINDING, url, method, reqBody, resp), publicPaths, allowCorsWildcardPublic,
+                depth, maxExploitOps, safetySkipDelete, pool, scheduler);
         for (SPI sc : scanners) {
-            tasks.add(() -> {
-                long t0 = System.nanoTime();
-                log.info("Старт сканера: "+sc.getCategory());
-                try { sc.run(sctx).get(); }
-                catch (Exception e) { log.error("Ошибка сканера "+sc.getCategory(), e); }
+            // несколько сканеров делят категорию, поэтому очередь и тег запросов — по имени класса
+            String name = sc.getClass().getSimpleName().replace("Scanner", "");
+            long t0 = System.nanoTime();
+            log.info("Старт сканера: "+sc.getCategory());
+            CompletableFuture<Void> done;
+            try { done = sc.run(sctx.forScanner(name)); }
+            catch (Exception e) { done = CompletableFuture.failedFuture(e); }
+            units.add(done.handle((v, e) -> {
+                if (e != null) log.error("Ошибка сканера "+sc.getCategory(), e);
                 long dt = (System.nanoTime()-t0)/1_000_000L;
-                synchronized (report.telemetry) {
-                    report.telemetry.scannerAttempts.merge(sc.getCategory(), 1, Integer::sum);
-                    report.telemetry.scannerDurMs.merge(sc.getCategory(), dt, Long::sum);
-                }
+                report.recordScanner(sc.getCategory(), dt);
                 log.info("Завершён сканер: "+sc.getCategory()+", длительность="+dt+" мс");
                 return null;
-            });
+            }));
         }
 
-        pool.invokeAll(tasks, dur.toMillis(), TimeUnit.MILLISECONDS);
-        pool.shutdownNow();
+        CompletableFuture<Void> all = ProbeScheduler.allOf(units);
+        try { all.get(Math.max(1, deadline.remaining().toMillis()), TimeUnit.MILLISECONDS); }
+        catch (TimeoutException e) {
+            log.info("Истёк срок сканирования: незапущенные проверки пропущены, запросы в полёте отменены");
+            report.coverage.stoppedBy = "deadline";
+        }
+        catch (ExecutionException e) { log.error("Ошибка выполнения проверок", e.getCause()); }
+        // срок ещё не вышел, а скан остановлен — его отменили извне (serve)
+        if (report.coverage.stoppedBy == null && deadline.isCancelled() && !deadline.remaining().isZero()) report.coverage.stoppedBy = "cancelled";
+        deadline.cancel();
+        scheduler.skipPending();
+        // прерванные единицы успевают записать уже собранные находки
+        try { all.get(SHUTDOWN_GRACE_MS, TimeUnit.MILLISECONDS); } catch (Exception ignored) {}
+        if (shared == null) pool.shutdownNow(); // общий пул scan-batch живёт дольше цели
+        journal.close();
+        traces.close();
+        if (traces.dropped() > 0 || traces.failure() != null) {
+            log.info("Трейсов записано: " + traces.written() + ", отброшено: " + traces.dropped()
+                    + (traces.failure() != null ? " (ошибка записи: " + traces.failure().getMessage() + ")" : ""));
+        }
+        log.debug("Трейсы: " + traces.rawBytes() + " байт без дедупликации, записано " + traces.storedBytes()
+                + ", повторных тел и заголовков: " + traces.blobHits());
+        scheduler.writeTo(report.telemetry);
+        scheduler.writeTo(report.coverage);
+        tracePolicy.writeTo(report.telemetry);
+        report.telemetry.tracesDropped = traces.dropped();
+        if (report.telemetry.traceBudgetExhausted) {
+            log.info("Бюджет трейсов исчерпан (" + traceBudgetMb + " МБ): часть трейсов урезана или не сохранена, см. telemetry.tracesOverBudget");
+        }
+
+        mergeCarried(report, carried);
+
+        // Проверенной считается операция, прошедшая скан целиком; остальные следующий --incremental проверит заново
+        for (Map.Entry<String, String> e : spec.operationHashes.entrySet()) {
+            if (!ownedOps.contains(e.getKey())) continue;
+            ReportModel.OperationState st = new ReportModel.OperationState();
+            st.hash = e.getValue();
+            if (!rescan.contains(e.getKey())) st.verifiedAt = previous.operations.get(e.getKey()).verifiedAt;
+            else if (report.coverage.complete) st.verifiedAt = started.toString();
+            report.operations.put(e.getKey(), st);
+        }
 
-        int eps = ops.size();
+        int eps = ownedOps.size();
         report.meta.endpointsScanned = eps;
-        report.telemetry.presetParams.put("operationsPlanned", eps);
+        report.telemetry.presetParams.put("operationsPlanned", ops.size());
         if (report.telemetry.requestsTotal > 0) {
             report.telemetry.avgLatencyMs = report.telemetry.avgLatencyMs / (double) report.telemetry.requestsTotal;
         }
         report.telemetry.contractMismatchRate = eps == 0 ? 0 : (double) report.contract.mismatches.size() / (double) eps;
+        report.telemetry.httpProtocol = transport.settings().protocol;
+        transport.connectionTelemetry().writeTo(report.telemetry);
+        if (shared == null) transport.rateLimiter().writeTo(report.telemetry);
+        else {
+            okhttp3.HttpUrl target = okhttp3.HttpUrl.parse(targetBase);
+            if (target != null) transport.rateLimiter().writeTo(report.telemetry, target.host());
+        }
+        transport.networkTimings().writeTo(report.telemetry);
+        if (responseCache != null) responseCache.writeTo(report.telemetry);
         Map<String, Integer> counts = new HashMap<>();
         for (ReportModel.SecurityIssue si : report.security) counts.merge(si.category, 1, Integer::sum);
         report.telemetry.vulnCounts = counts;
@@ -400,12 +629,12 @@ public class ScanCommand implements Callable<Integer> {
         ReportWriter writer = new ReportWriter();
         writer.writeJson(report, reportJson);
         writer.writeHtml(report, reportHtml);
-        writer.writePdf(report, reportPdf);
+        if (!noPdf) writer.writePdf(report, reportPdf);
 
         // Optional anonymous telemetry
         if (telemetryOptIn && telemetryEndpoint != null && !telemetryEndpoint.isBlank()) {
             try {
-                okhttp3.OkHttpClient c = new okhttp3.OkHttpClient.Builder().callTimeout(java.time.Duration.ofSeconds(5)).build();
+                okhttp3.OkHttpClient c = transport.client(java.time.Duration.ofSeconds(5));
                 com.fasterxml.jackson.databind.ObjectMapper om = new com.fasterxml.jackson.databind.ObjectMapper();
                 String payload = om.writeValueAsString(report.telemetry);
                 okhttp3.Request req = new okhttp3.Request.Builder()
@@ -416,84 +645,123 @@ public class ScanCommand implements Callable<Integer> {
             } catch (Exception ignored) {}
         }
 
+        result = report;
         log.info("Сканирование завершено. Эндпоинтов: "+eps+", запросов: "+report.telemetry.requestsTotal+", длительность: "+report.meta.durationMs+" мс");
         return 0;
     }
 
-    private static void validateJson(JsonNode node, JsonNode schema, String path, List<String> errs) {
-        if (schema == null || schema.isMissingNode()) return;
-        if (schema.has("$ref")) {
-            String ref = schema.get("$ref").asText();
-            JsonNode resolved = resolveRef(ref);
-            if (resolved != null) { schema = resolved; }
-        }
-        if (schema.has("oneOf") && schema.get("oneOf").isArray()) {
-            boolean ok = false;
-            for (JsonNode it : schema.get("oneOf")) {
-                List<String> sub = new ArrayList<>();
-                validateJson(node, it, path, sub);
-                if (sub.isEmpty()) { ok = true; break; }
+    private static ReportModel loadPrevious(Path file, String targetBase, Config.Preset pr, JsonlLogger log) {
+        if (!Files.exists(file)) { log.info("Предыдущий отчёт не найден (" + file + ") — полный скан"); return null; }
+        try {
+            ReportModel prev = new ObjectMapper().configure(com.fasterxml.jackson.databind.DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+                    .readValue(file.toFile(), ReportModel.class);
+            if (!targetBase.equals(prev.meta.target) || !pr.name().equalsIgnoreCase(prev.meta.preset)) {
+                log.info("Предыдущий отчёт снят с другой цели или пресета — полный скан");
+                return null;
             }
-            if (!ok) errs.add(path+": oneOf не выполнен");
-            return;
+            return prev;
+        } catch (Exception e) {
+            log.error("Не удалось прочитать предыдущий отчёт — полный скан", e);
+            return null;
         }
-        if (schema.has("anyOf") && schema.get("anyOf").isArray()) {
-            boolean ok = false;
-            for (JsonNode it : schema.get("anyOf")) {
-                List<String> sub = new ArrayList<>();
-                validateJson(node, it, path, sub);
-                if (sub.isEmpty()) { ok = true; break; }
-            }
-            if (!ok) errs.add(path+": anyOf не выполнен");
-            return;
+    }
+
+    // Пути discovery этого процесса: словарь общих путей и вариации корневых сегментов спецификации
+    // в пределах лимита профиля, поделённые между шардами по кругу
+    private static List<String> discoveryCandidates(List<String> endpoints, Config.Preset pr, int shardIndex, int shardTotal) {
+        Set<String> candidates = new LinkedHashSet<>();
+        // словарь общих путей
+        List<String> common = List.of(
+                "/actuator", "/actuator/health", "/actuator/info", "/actuator/env", "/actuator/metrics", "/actuator/beans", "/actuator/loggers", "/actuator/mappings",
+                "/admin", "/admin/health", "/admin/info", "/internal", "/internal/status", "/internal/metrics",
+                "/status", "/metrics", "/manage", "/management", "/health", "/version", "/info", "/env", "/logs",
+                "/swagger-ui", "/swagger-ui/index.html", "/swagger.json", "/swagger/v1/swagger.json", "/openapi", "/openapi.json", "/v3/api-docs", "/v3/api-docs.yaml",
+                "/graphql", "/graphiql", "/voyager", "/playground",
+                "/.well-known/openid-configuration", "/.well-known/security.txt"
+        );
+        candidates.addAll(common);
+        // на основе OpenAPI — собрать корневые сегменты и их вариации
+        Set<String> roots = new HashSet<>();
+        for (String p : endpoints) {
+            String seg = p.startsWith("/")? p.substring(1): p;
+            int idx = seg.indexOf('/'); if (idx>0) seg = seg.substring(0, idx);
+            if (!seg.isBlank()) roots.add(seg);
         }
-        if (schema.has("allOf") && schema.get("allOf").isArray()) {
-            for (JsonNode it : schema.get("allOf")) {
-                validateJson(node, it, path, errs);
-            }
+        List<String> suffixes = List.of("/health","/status","/metrics","/debug","/internal","/admin","/v1","/v2","/info");
+        for (String rseg : roots) {
+            for (String sfx : suffixes) candidates.add("/"+rseg+sfx);
         }
-        String type = schema.path("type").asText(null);
-        if (type != null) {
-            switch (type) {
-                case "object" -> {
-                    if (!node.isObject()) { errs.add(path+": ожидается object"); return; }
-                    JsonNode props = schema.path("properties");
-                    JsonNode required = schema.path("required");
-                    boolean additional = schema.path("additionalProperties").asBoolean(true);
-                    if (required.isArray()) {
-                        required.forEach(r -> { if (!node.has(r.asText())) errs.add(path+": отсутствует обязательное поле "+r.asText()); });
-                    }
-                    if (!additional && props.isObject()) {
-                        node.fieldNames().forEachRemaining(fn -> { if (!props.has(fn)) errs.add(path+": лишнее поле "+fn); });
-                    }
-                    if (props.isObject()) {
-                        props.fieldNames().forEachRemaining(fn -> {
-                            if (node.has(fn)) validateJson(node.get(fn), props.get(fn), path+"."+fn, errs);
-                        });
-                    }
-                }
-                case "array" -> {
-                    if (!node.isArray()) { errs.add(path+": ожидается array"); return; }
-                    JsonNode items = schema.path("items");
-                    for (int i=0;i<node.size();i++) validateJson(node.get(i), items, path+"["+i+"]", errs);
-                }
-                case "string" -> { if (!node.isTextual()) errs.add(path+": ожидается string"); }
-                case "integer" -> { if (!node.isIntegralNumber()) errs.add(path+": ожидается integer"); }
-                case "number" -> { if (!node.isNumber()) errs.add(path+": ожидается number"); }
-                case "boolean" -> { if (!node.isBoolean()) errs.add(path+": ожидается boolean"); }
-            }
+        // лимит по профилю
+        int maxProbe = switch (pr) { case FAST -> 30; case AGGRESSIVE -> 200; default -> 80; };
+        List<String> owned = new ArrayList<>();
+        int i = 0;
+        for (String p : candidates) {
+            if (i >= maxProbe) break;
+            if (i++ % shardTotal == shardIndex) owned.add(p);
         }
+        return owned;
     }
 
-    private static JsonNode resolveRef(String ref) {
-        if (ref == null || !ref.startsWith("#")) return null;
-        String[] parts = ref.substring(2).split("/");
-        JsonNode cur = cachedSpecRoot;
-        for (String p : parts) {
-            if (cur == null) return null;
-            cur = cur.path(p);
+    // Переносит результаты неперепроверяемых операций. Находка сканера относится к пути-шаблону,
+    // которому соответствует её endpoint; находки без такого пути (например, "/") сканеры получат заново.
+    // Несоответствия контракту добавляются в отчёт сразу, находки сканеров возвращаются для mergeCarried.
+    // operations, paths и discovery — доля этого процесса при --shard. Без изменений сканеры не запускаются вовсе:
+    // находки вне путей спецификации переносит первый шард (specRouter — все пути), неописанные — владелец пути discovery
+    private static List<ReportModel.SecurityIssue> carryForward(ReportModel prev, ReportModel report, Set<String> operations, Set<String> paths,
+                                                                Set<String> discovery, PathRouter specRouter, boolean firstShard,
+                                                                Set<String> rescan) {
+        Set<String> unchangedPaths = new LinkedHashSet<>(paths);
+        for (String op : rescan) unchangedPaths.remove(op.substring(op.indexOf(' ') + 1));
+        PathRouter unchanged = new PathRouter(unchangedPaths);
+        for (ReportModel.ContractMismatch cm : prev.contract.mismatches) {
+            String op = cm.method + " " + cm.endpoint;
+            if (operations.contains(op) && !rescan.contains(op)) report.contract.mismatches.add(cm);
         }
-        return cur;
+        if (rescan.isEmpty()) {
+            for (ReportModel.Undocumented u : prev.contract.undocumented) if (discovery.contains(u.path)) report.contract.undocumented.add(u);
+        }
+        List<ReportModel.SecurityIssue> carried = new ArrayList<>();
+        for (ReportModel.SecurityIssue si : prev.security) {
+            if (si.endpoint != null && unchanged.match(si.endpoint) != null) carried.add(si);
+            else if (rescan.isEmpty() && firstShard && (si.endpoint == null || specRouter.match(si.endpoint) == null)) carried.add(si);
+        }
+        return carried;
+    }
+
+    // Сканеры изменившегося пути иногда задевают соседние (BOLA ходит по ID из других ручек):
+    // перенесённая находка, полученная в этом скане заново, не дублируется
+    private static void mergeCarried(ReportModel report, List<ReportModel.SecurityIssue> carried) {
+        Set<String> fresh = new HashSet<>();
+        for (ReportModel.SecurityIssue si : report.security) fresh.add(issueKey(si));
+        for (ReportModel.SecurityIssue si : carried) if (fresh.add(issueKey(si))) report.security.add(si);
+    }
+
+    private static String issueKey(ReportModel.SecurityIssue si) {
+        String d = si.description == null ? "" : si.description;
+        int risk = d.indexOf(" [OWASP Risk:");
+        return si.endpoint + "|" + si.method + "|" + (risk >= 0 ? d.substring(0, risk) : d);
+    }
+
+    // Путь описан в спецификации: совпал с шаблоном, и шаблон описывает метод.
+    // 405 и OPTIONS на описанном пути — ответ самого сервера на известную ручку, не новая поверхность
+    private boolean documented(String path, String method, int status) {
+        PathRouter.Match m = router.match(path);
+        if (m == null) return false;
+        return m.template().methods.contains(method) || status == 405 || "OPTIONS".equals(method);
+    }
+
+    // Шаблон спецификации, к которому относится запрос по URL, или null
+    private PathRouter.Template templateOf(String url) {
+        if (router == null) return null;
+        HttpUrl u = HttpUrl.parse(url);
+        if (u == null) return null;
+        String path = u.encodedPath();
+        if (!basePath.isEmpty()) {
+            if (!path.startsWith(basePath)) return null;
+            path = path.substring(basePath.length());
+        }
+        PathRouter.Match m = router.match(path);
+        return m == null ? null : m.template();
     }
 
     private static int scoreOp(String path, String method, List<String> hot) {
@@ -504,28 +772,50 @@ public class ScanCommand implements Callable<Integer> {
         return s;
     }
 
-    private String saveFullTrace(String url, String method, String reqBody, Response r) {
+    private static long utf8Length(String s) {
+        return s == null ? 0 : s.getBytes(java.nio.charset.StandardCharsets.UTF_8).length;
+    }
+
+    // Трейс ставится в очередь хранилища: маскирование — на потоке сканера, запись — на фоновом потоке.
+    // Политика хранения решает, сохранить ли трейс целиком, с выдержками тел или не сохранять (null)
+    private String saveFullTrace(String category, String url, String method, String reqBody, ResponseSnapshot r) {
+        if (!tracePolicy.sampled(category)) return null;
         try {
-            String name = method+"_"+ url.replaceAll("[^a-zA-Z0-9]+","_") +"_"+r.code()+"_"+System.currentTimeMillis()+".json";
-            Path file = tracesDir.resolve(name);
-            Files.createDirectories(tracesDir);
-            Map<String,Object> tr = new LinkedHashMap<>();
-            tr.put("url", url);
-            tr.put("method", method);
+            TraceStore.Trace tr = new TraceStore.Trace();
+            tr.url = url;
+            tr.method = method;
+            PathRouter.Template t = templateOf(url);
+            if (t != null) {
+                tr.pathTemplate = t.path;
+                String m = method.toUpperCase(Locale.ROOT);
+                if (t.methods.contains(m)) tr.operation = m + " " + t.path;
+            }
             Map<String,String> reqH = new LinkedHashMap<>();
-            r.request().headers().names().forEach(h -> reqH.put(h, ru.apidefender.core.http.Masking.maskHeader(h, r.request().header(h))));
-            tr.put("requestHeaders", reqH);
-            if (reqBody != null) tr.put("requestBody", ru.apidefender.core.http.Masking.maskSecrets(reqBody));
+            r.requestHeaders().names().forEach(h -> reqH.put(h, ru.apidefender.core.http.Masking.maskHeader(h, r.requestHeaders().get(h))));
+            tr.requestHeaders = reqH;
+            if (reqBody != null) tr.requestBody = ru.apidefender.core.http.Masking.maskSecrets(reqBody);
             Map<String,String> resH = new LinkedHashMap<>();
             r.headers().names().forEach(h -> resH.put(h, ru.apidefender.core.http.Masking.maskHeader(h, r.header(h))));
-            tr.put("status", r.code());
-            tr.put("responseHeaders", resH);
-            String body = r.peekBody(5_000_000).string();
-            tr.put("responseBody", ru.apidefender.core.http.Masking.maskSecrets(body));
-            new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(file.toFile(), tr);
-            return file.getFileName().toString();
+            tr.status = r.code();
+            tr.responseHeaders = resH;
+            tr.responseBody = ru.apidefender.core.http.Masking.maskSecrets(r.bodyString());
+            long meta = 256 + tr.url.length();
+            for (Map.Entry<String, String> e : reqH.entrySet()) meta += e.getKey().length() + e.getValue().length() + 6;
+            for (Map.Entry<String, String> e : resH.entrySet()) meta += e.getKey().length() + e.getValue().length() + 6;
+            long reqLen = utf8Length(tr.requestBody), resLen = utf8Length(tr.responseBody);
+            switch (tracePolicy.admit(category, meta + reqLen + resLen, meta + tracePolicy.excerptLength(reqLen) + tracePolicy.excerptLength(resLen))) {
+                case SKIP: return null;
+                case EXCERPT:
+                    String reqEx = tracePolicy.excerpt(tr.requestBody), resEx = tracePolicy.excerpt(tr.responseBody);
+                    tr.excerpt = !Objects.equals(reqEx, tr.requestBody) || !Objects.equals(resEx, tr.responseBody);
+                    tr.requestBody = reqEx;
+                    tr.responseBody = resEx;
+                    break;
+                default:
+            }
+            return traces.save(tr); // null — очередь записи переполнена
         } catch (Exception e) {
-            return UUID.randomUUID().toString();
+            return null;
         }
     }
 }
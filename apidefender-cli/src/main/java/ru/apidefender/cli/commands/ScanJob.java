@@ -0,0 +1,167 @@
+package ru.apidefender.cli.commands;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import ru.apidefender.core.http.ScanDeadline;
+import ru.apidefender.core.report.ReportModel;
+import ru.apidefender.scanners.ProbeScheduler;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Задание serve: состояние, ход скана и история событий для подписчиков (SSE).
+// Поля состояния публичные — это и есть JSON-ответ API
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ScanJob {
+    private static final int MAX_EVENTS = 500;
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    public static class Progress {
+        public long unitsSubmitted;
+        public long unitsFinished;
+        public int issues;
+        public int contractMismatches;
+        public int undocumented;
+        public long remainingMs;
+    }
+
+    public final String id;
+    public final String name;
+    public volatile String state = "queued"; // queued | running | done | failed | cancelled
+    public final String submittedAt = Instant.now().toString();
+    public volatile String startedAt;
+    public volatile String finishedAt;
+    public volatile Integer exitCode;
+    public volatile String error;
+    public volatile String stoppedBy;
+    public final String outDir;
+    public volatile Progress progress;
+
+    final List<String> args;
+    volatile Future<?> future;
+    private volatile ScanDeadline deadline;
+    private volatile ProbeScheduler scheduler;
+    private volatile ReportModel report;
+    private volatile boolean cancelRequested;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final List<String> events = new ArrayList<>();
+    private final List<BlockingQueue<String>> subscribers = new ArrayList<>();
+
+    ScanJob(String id, String name, Path outDir, List<String> args) {
+        this.id = id;
+        this.name = name;
+        this.outDir = outDir.toString();
+        this.args = args;
+    }
+
+    @JsonIgnore public boolean isFinished() { return !"queued".equals(state) && !"running".equals(state); }
+
+    void running(ScanDeadline d, ProbeScheduler s, ReportModel r) {
+        deadline = d;
+        scheduler = s;
+        report = r;
+        // отмена пришла, пока скан готовился (разбор спецификации)
+        if (cancelRequested) d.cancel();
+    }
+
+    void markStarted() {
+        startedAt = Instant.now().toString();
+        state = "running";
+        publish("state", status(state));
+    }
+
+    void markFinished(String finalState, Integer code, String err) {
+        ReportModel r = report;
+        if (r != null) stoppedBy = r.coverage.stoppedBy;
+        sampleProgress();
+        finishedAt = Instant.now().toString();
+        exitCode = code;
+        error = err;
+        String st = cancelRequested && !"failed".equals(finalState) ? "cancelled" : finalState;
+        // финальное событие публикуется до смены состояния: подписчик, увидевший isFinished, уже получил его
+        publish("state", status(st));
+        state = st;
+    }
+
+    // true — заданию отправлен сигнал отмены (если оно ещё в очереди, его снимает вызывающий)
+    boolean cancel() {
+        if (isFinished()) return false;
+        cancelRequested = true;
+        ScanDeadline d = deadline;
+        if (d != null) d.cancel();
+        return true;
+    }
+
+    void sampleProgress() {
+        ProbeScheduler s = scheduler;
+        ReportModel r = report;
+        if (s == null || r == null) return;
+        Progress p = new Progress();
+        p.unitsSubmitted = s.unitsSubmitted();
+        p.unitsFinished = s.unitsFinished();
+        int[] counts = r.findingCounts();
+        p.issues = counts[0];
+        p.contractMismatches = counts[1];
+        p.undocumented = counts[2];
+        ScanDeadline d = deadline;
+        p.remainingMs = d == null ? 0 : d.remaining().toMillis();
+        progress = p;
+    }
+
+    void publishProgress() {
+        sampleProgress();
+        if (progress != null) publish("progress", progress);
+    }
+
+    private Map<String, Object> status(String st) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("id", id);
+        m.put("state", st);
+        if (exitCode != null) m.put("exitCode", exitCode);
+        if (error != null) m.put("error", error);
+        if (stoppedBy != null) m.put("stoppedBy", stoppedBy);
+        return m;
+    }
+
+    private void publish(String type, Object data) {
+        String frame;
+        try {
+            frame = "event: " + type + "\ndata: " + JSON.writeValueAsString(data) + "\n\n";
+        } catch (Exception e) {
+            return;
+        }
+        lock.lock();
+        try {
+            events.add(frame);
+            if (events.size() > MAX_EVENTS) events.remove(0);
+            for (BlockingQueue<String> q : subscribers) q.offer(frame);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Подписка: история событий и очередь новых; история и регистрация берутся атомарно, чтобы ничего не потерять
+    BlockingQueue<String> subscribe(List<String> history) {
+        BlockingQueue<String> q = new LinkedBlockingQueue<>();
+        lock.lock();
+        try {
+            history.addAll(events);
+            subscribers.add(q);
+        } finally {
+            lock.unlock();
+        }
+        return q;
+    }
+
+    void unsubscribe(BlockingQueue<String> q) {
+        lock.lock();
+        try { subscribers.remove(q); } finally { lock.unlock(); }
+    }
+}
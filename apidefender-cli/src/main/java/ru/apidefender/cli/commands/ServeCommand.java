@@ -0,0 +1,331 @@
+package ru.apidefender.cli.commands;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import picocli.CommandLine;
+import ru.apidefender.core.http.HttpTransport;
+import ru.apidefender.core.log.JsonlLogger;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Режим демона: прогретая JVM, общий транспорт, пул исполнителей и кэш разобранных спецификаций,
+// сканы принимаются как задания через локальный HTTP API. Задания идут через ограниченную очередь
+// (--max-jobs одновременно, --queue-size ожидают, сверх — 429), срок каждого не больше --max-job-timeout.
+//   POST /jobs                      — цель в формате манифеста scan-batch, ответ 202 со статусом задания
+//   GET  /jobs, /jobs/{id}          — статусы
+//   POST /jobs/{id}/cancel, DELETE  — отмена (частичный отчёт всё равно пишется)
+//   GET  /jobs/{id}/report?format=json|html|pdf
+//   GET  /jobs/{id}/events          — ход скана (text/event-stream)
+// Файлы задания демон размещает сам: опции scan с путями в args задания отклоняются, openapi и tokenFile —
+// относительные пути внутри --input-dir. С --api-token-file каждый запрос несёт Authorization: Bearer <токен>;
+// без токена API слушает только loopback. Запросы из браузера отсекаются: POST только с Content-Type
+// application/json (кросс-доменный запрос требует preflight), запросы с заголовком Origin отклоняются
+@CommandLine.Command(name = "serve", description = "Демон: локальный HTTP API для заданий сканирования")
+public class ServeCommand implements Callable<Integer> {
+    private static final long HEARTBEAT_MS = 15_000L;
+    // опции scan с путями (отчёты, трейсы, журналы, кэши) — в args задания не принимаются
+    private static final Set<String> PATH_OPTIONS = pathOptions();
+
+    @CommandLine.Option(names = "--host", description = "Адрес, на котором слушает API", defaultValue = "127.0.0.1")
+    String host;
+    @CommandLine.Option(names = "--port", description = "Порт API", defaultValue = "8787")
+    int port;
+    @CommandLine.Option(names = "--input-dir", description = "Каталог входных файлов заданий: openapi и tokenFile задаются относительно него", defaultValue = "/in")
+    Path inputDir;
+    @CommandLine.Option(names = "--work-dir", description = "Каталог результатов заданий (подкаталог на задание)", defaultValue = "/out/jobs")
+    Path workDir;
+    @CommandLine.Option(names = "--max-jobs", description = "Сколько заданий выполняется одновременно", defaultValue = "2")
+    int maxJobs;
+    @CommandLine.Option(names = "--queue-size", description = "Сколько заданий может ждать в очереди", defaultValue = "16")
+    int queueSize;
+    @CommandLine.Option(names = "--max-job-timeout", description = "Потолок --timeout одного задания (например, 30m)", defaultValue = "30m")
+    String maxJobTimeout;
+    @CommandLine.Option(names = "--api-token-file", description = "Файл с токеном API: запросы без Authorization: Bearer <токен> отклоняются (обязателен для --host не на loopback)")
+    Path apiTokenFile;
+    @CommandLine.Option(names = "--keep-jobs", description = "Сколько завершённых заданий помнить (старые забываются, файлы остаются)", defaultValue = "100")
+    int keepJobs;
+    @CommandLine.Mixin
+    TransportOptions transportOptions;
+
+    private final ObjectMapper mapper = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<String, ScanJob> jobs = new LinkedHashMap<>();
+    private final AtomicLong seq = new AtomicLong();
+    private ThreadPoolExecutor executor;
+    private ScanCommand.Shared shared;
+    private Duration jobTimeoutCap;
+    private JsonlLogger log;
+    private byte[] apiToken; // null — API без проверки подлинности (только loopback)
+
+    @Override
+    public Integer call() throws Exception {
+        log = new JsonlLogger(false);
+        if (apiTokenFile != null) {
+            String tok = Files.readString(apiTokenFile).trim();
+            if (tok.isEmpty()) { log.error("Пустой файл токена API: " + apiTokenFile, null); return 2; }
+            apiToken = tok.getBytes(StandardCharsets.UTF_8);
+        } else if (!InetAddress.getByName(host).isLoopbackAddress()) {
+            log.error("API на " + host + " доступен не только локально: задайте --api-token-file", null);
+            return 2;
+        }
+        inputDir = inputDir.toAbsolutePath().normalize();
+        jobTimeoutCap = ScanCommand.parseDuration(maxJobTimeout);
+        Files.createDirectories(workDir);
+        HttpTransport transport = transportOptions.transport(maxJobs);
+        ExecutorService pool = transportOptions.pool();
+        shared = new ScanCommand.Shared(transport, pool);
+        executor = new ThreadPoolExecutor(Math.max(1, maxJobs), Math.max(1, maxJobs), 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueSize)));
+        ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor();
+        ticker.scheduleAtFixedRate(() -> {
+            for (ScanJob j : snapshot()) if ("running".equals(j.state)) j.publishProgress();
+        }, 1, 1, TimeUnit.SECONDS);
+
+        HttpServer server = HttpServer.create(new InetSocketAddress(host, port), 0);
+        server.createContext("/health", ex -> send(ex, 200, Map.of("status", "ok", "jobs", snapshot().size())));
+        server.createContext("/jobs", this::handleJobs);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.start();
+        log.info("API запущен: http://" + host + ":" + port + " (заданий одновременно " + maxJobs + ", очередь " + queueSize + ")");
+
+        CountDownLatch stopped = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            log.info("Остановка: отмена заданий");
+            for (ScanJob j : snapshot()) j.cancel();
+            executor.shutdown();
+            try { executor.awaitTermination(10, TimeUnit.SECONDS); } catch (InterruptedException ignored) {}
+            server.stop(0);
+            ticker.shutdownNow();
+            pool.shutdownNow();
+            transport.shutdown();
+            stopped.countDown();
+        }));
+        stopped.await();
+        return 0;
+    }
+
+    private void handleJobs(HttpExchange ex) throws IOException {
+        try {
+            if (ex.getRequestHeaders().containsKey("Origin")) {
+                send(ex, 403, error("Запросы из браузера (с заголовком Origin) не принимаются"));
+                return;
+            }
+            if (!authorized(ex)) {
+                ex.getResponseHeaders().set("WWW-Authenticate", "Bearer");
+                send(ex, 401, error("Нужен заголовок Authorization: Bearer <токен API>"));
+                return;
+            }
+            String[] parts = ex.getRequestURI().getPath().replaceAll("/+$", "").split("/");
+            String method = ex.getRequestMethod();
+            // parts: "", "jobs", {id}, {action}
+            if (parts.length == 2) {
+                if ("GET".equals(method)) send(ex, 200, snapshot());
+                else if ("POST".equals(method)) submit(ex);
+                else send(ex, 405, error("Метод не поддерживается"));
+                return;
+            }
+            ScanJob job;
+            lock.lock();
+            try { job = jobs.get(parts[2]); } finally { lock.unlock(); }
+            if (job == null) { send(ex, 404, error("Задание не найдено: " + parts[2])); return; }
+            String action = parts.length > 3 ? parts[3] : "";
+            switch (method + " " + action) {
+                case "GET " -> { job.sampleProgress(); send(ex, 200, job); }
+                case "DELETE ", "POST cancel" -> cancel(ex, job);
+                case "GET report" -> report(ex, job);
+                case "GET events" -> events(ex, job);
+                default -> send(ex, 404, error("Неизвестный запрос: " + method + " " + ex.getRequestURI().getPath()));
+            }
+        } catch (Exception e) {
+            log.error("Ошибка обработки запроса API", e);
+            try { send(ex, 500, error(e.getClass().getSimpleName() + ": " + e.getMessage())); } catch (Exception ignored) {}
+        } finally {
+            ex.close();
+        }
+    }
+
+    private void submit(HttpExchange ex) throws IOException {
+        String type = ex.getRequestHeaders().getFirst("Content-Type");
+        if (type == null || !type.toLowerCase(Locale.ROOT).startsWith("application/json")) {
+            send(ex, 415, error("Нужен Content-Type: application/json"));
+            return;
+        }
+        ScanBatchCommand.Target t;
+        try {
+            t = mapper.readValue(ex.getRequestBody(), ScanBatchCommand.Target.class);
+        } catch (Exception e) {
+            send(ex, 400, error("Некорректное тело запроса: " + e.getMessage()));
+            return;
+        }
+        if (t.openapi == null || t.tokenFile == null) { send(ex, 400, error("Нужны поля openapi и tokenFile")); return; }
+        for (String p : List.of(t.openapi, t.tokenFile)) {
+            if (inputPath(p) == null) {
+                send(ex, 400, error("Путь " + p + " недопустим: нужен относительный путь без «..» внутри --input-dir"));
+                return;
+            }
+        }
+        for (String a : t.args) {
+            String opt = a.split("=", 2)[0];
+            if (PATH_OPTIONS.contains(opt)) {
+                send(ex, 400, error("Опция " + opt + " в args задания запрещена: файлы задания размещает демон в --work-dir"));
+                return;
+            }
+        }
+        String id = Long.toString(System.currentTimeMillis(), 36) + "-" + seq.incrementAndGet();
+        String name = t.name != null ? t.name : id;
+        Path out = workDir.resolve(id);
+        ScanJob job = new ScanJob(id, name, out, ScanBatchCommand.scanArgs(t, out, List.of(), inputDir, transportOptions));
+        lock.lock();
+        try {
+            job.future = executor.submit(() -> runJob(job));
+            jobs.put(id, job);
+            evictFinished();
+        } catch (RejectedExecutionException e) {
+            send(ex, 429, error("Очередь заданий заполнена (" + queueSize + ")"));
+            return;
+        } finally {
+            lock.unlock();
+        }
+        log.info("Задание " + id + " принято: " + name);
+        ex.getResponseHeaders().set("Location", "/jobs/" + id);
+        send(ex, 202, job);
+    }
+
+    private void runJob(ScanJob job) {
+        if (job.isFinished()) return; // отменено в очереди
+        job.markStarted();
+        try {
+            ScanCommand scan = new ScanCommand();
+            new CommandLine(scan).setOverwrittenOptionsAllowed(true).parseArgs(job.args.toArray(new String[0]));
+            // бюджет задания: запрошенный --timeout не больше --max-job-timeout
+            if (ScanCommand.parseDuration(scan.timeout).compareTo(jobTimeoutCap) > 0) scan.timeout = maxJobTimeout;
+            scan.monitor = job::running;
+            int code = scan.run(shared);
+            job.markFinished(code == 0 ? "done" : "failed", code, null);
+        } catch (Exception e) {
+            log.error("Ошибка задания " + job.id, e);
+            job.markFinished("failed", 1, e.getClass().getSimpleName() + ": " + Optional.ofNullable(e.getMessage()).orElse(""));
+        }
+        log.info("Задание " + job.id + " завершено: " + job.state);
+    }
+
+    private void cancel(HttpExchange ex, ScanJob job) throws IOException {
+        if (!job.cancel()) { send(ex, 409, error("Задание уже завершено: " + job.state)); return; }
+        // из очереди задание снимается сразу; выполняющееся останавливается по сигналу и пишет частичный отчёт
+        if (job.future != null && executor.remove((Runnable) job.future)) job.markFinished("cancelled", null, null);
+        send(ex, 202, job);
+    }
+
+    private void report(HttpExchange ex, ScanJob job) throws IOException {
+        String query = Optional.ofNullable(ex.getRequestURI().getQuery()).orElse("");
+        String format = query.startsWith("format=") ? query.substring("format=".length()) : "json";
+        String type = switch (format) {
+            case "json" -> "application/json";
+            case "html" -> "text/html; charset=utf-8";
+            case "pdf" -> "application/pdf";
+            default -> null;
+        };
+        if (type == null) { send(ex, 400, error("Формат: json|html|pdf")); return; }
+        Path file = Path.of(job.outDir).resolve("report." + format);
+        if (!job.isFinished() || !Files.exists(file)) { send(ex, 404, error("Отчёт ещё не готов: " + job.state)); return; }
+        ex.getResponseHeaders().set("Content-Type", type);
+        ex.sendResponseHeaders(200, Files.size(file));
+        try (OutputStream os = ex.getResponseBody()) { Files.copy(file, os); }
+    }
+
+    // SSE: сначала история событий задания, затем новые; поток закрывается после финального состояния
+    private void events(HttpExchange ex, ScanJob job) throws IOException {
+        ex.getResponseHeaders().set("Content-Type", "text/event-stream; charset=utf-8");
+        ex.getResponseHeaders().set("Cache-Control", "no-cache");
+        ex.sendResponseHeaders(200, 0);
+        List<String> history = new ArrayList<>();
+        BlockingQueue<String> q = job.subscribe(history);
+        try (OutputStream os = ex.getResponseBody()) {
+            for (String frame : history) os.write(frame.getBytes(StandardCharsets.UTF_8));
+            os.flush();
+            long lastWrite = System.currentTimeMillis();
+            while (true) {
+                String frame = q.poll(1, TimeUnit.SECONDS);
+                if (frame == null && job.isFinished()) break;
+                if (frame == null && System.currentTimeMillis() - lastWrite < HEARTBEAT_MS) continue;
+                os.write((frame != null ? frame : ": ping\n\n").getBytes(StandardCharsets.UTF_8));
+                os.flush();
+                lastWrite = System.currentTimeMillis();
+            }
+        } catch (InterruptedException ignored) {
+        } catch (IOException ignored) {
+            // клиент отключился
+        } finally {
+            job.unsubscribe(q);
+        }
+    }
+
+    // Входной файл задания: относительный путь без «..», остающийся внутри --input-dir; иначе null
+    private Path inputPath(String p) {
+        Path rel;
+        try {
+            rel = Path.of(p);
+        } catch (InvalidPathException e) {
+            return null;
+        }
+        if (rel.isAbsolute() || rel.getRoot() != null) return null;
+        for (Path part : rel) if ("..".equals(part.toString())) return null;
+        Path r = inputDir.resolve(rel).normalize();
+        return r.startsWith(inputDir) ? r : null;
+    }
+
+    private boolean authorized(HttpExchange ex) {
+        if (apiToken == null) return true;
+        String h = ex.getRequestHeaders().getFirst("Authorization");
+        if (h == null || !h.startsWith("Bearer ")) return false;
+        return MessageDigest.isEqual(apiToken, h.substring("Bearer ".length()).trim().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Set<String> pathOptions() {
+        Set<String> names = new HashSet<>();
+        for (CommandLine.Model.OptionSpec o : new CommandLine(new ScanCommand()).getCommandSpec().options()) {
+            if (o.type() == Path.class) names.addAll(Arrays.asList(o.names()));
+        }
+        return Set.copyOf(names);
+    }
+
+    private List<ScanJob> snapshot() {
+        lock.lock();
+        try { return new ArrayList<>(jobs.values()); } finally { lock.unlock(); }
+    }
+
+    // Под lock: забыть самые старые завершённые задания сверх --keep-jobs
+    private void evictFinished() {
+        long finished = jobs.values().stream().filter(ScanJob::isFinished).count();
+        Iterator<ScanJob> it = jobs.values().iterator();
+        while (finished > keepJobs && it.hasNext()) {
+            if (it.next().isFinished()) { it.remove(); finished--; }
+        }
+    }
+
+    private static Map<String, String> error(String message) {
+        return Map.of("error", message);
+    }
+
+    private void send(HttpExchange ex, int status, Object body) throws IOException {
+        byte[] bytes = mapper.writeValueAsBytes(body);
+        ex.getResponseHeaders().set("Content-Type", "application/json");
+        ex.sendResponseHeaders(status, bytes.length);
+        try (OutputStream os = ex.getResponseBody()) { os.write(bytes); }
+    }
+}
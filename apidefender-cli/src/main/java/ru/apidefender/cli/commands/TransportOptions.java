@@ -0,0 +1,56 @@
+package ru.apidefender.cli.commands;
+
+import picocli.CommandLine;
+import ru.apidefender.core.http.HttpTransport;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+// Опции общего транспорта и пула исполнителей для команд, которые ведут несколько сканов в одной JVM
+// (scan-batch, serve): окно --max-in-flight — общий бюджет запросов на все сканы
+public class TransportOptions {
+    @CommandLine.Option(names = "--concurrency", description = "Число потоков общего пула")
+    Integer concurrency;
+    @CommandLine.Option(names = "--executor", description = "Исполнитель задач: platform|virtual", defaultValue = "platform")
+    String executor;
+    @CommandLine.Option(names = "--max-in-flight", description = "Общее для всех сканов окно запросов «в полёте»", defaultValue = "256")
+    int maxInFlight;
+    @CommandLine.Option(names = "--max-idle-connections", description = "Максимум простаивающих соединений в общем пуле", defaultValue = "64")
+    int maxIdleConnections;
+    @CommandLine.Option(names = "--keep-alive", description = "Время жизни простаивающего соединения (например, 5m)", defaultValue = "5m")
+    String keepAlive;
+    @CommandLine.Option(names = "--max-requests-per-host", description = "Максимум одновременных запросов к одному хосту", defaultValue = "32")
+    int maxRequestsPerHost;
+    @CommandLine.Option(names = "--http-protocol", description = "Протокол: h1|h2|h2c", defaultValue = "h2")
+    String httpProtocol;
+    @CommandLine.Option(names = "--max-streams-per-connection", description = "Максимум одновременных потоков на одном соединении (0 = без ограничения)", defaultValue = "100")
+    int maxStreamsPerConnection;
+    @CommandLine.Option(names = "--rate-limit", description = "Потолок запросов в секунду на хост (0 = без потолка)", defaultValue = "0")
+    double rateLimit;
+    @CommandLine.Option(names = "--adaptive-rate-limit", description = "Снижать темп при 429/Retry-After и плавно восстанавливать", defaultValue = "true")
+    boolean adaptiveRateLimit;
+
+    int threads() {
+        return concurrency != null ? concurrency : Math.max(2, Runtime.getRuntime().availableProcessors());
+    }
+
+    // parallelScans — сколько сканов идёт одновременно: от него зависит общий лимит Dispatcher
+    HttpTransport transport(int parallelScans) {
+        HttpTransport.Settings ts = new HttpTransport.Settings();
+        ts.maxIdleConnections = maxIdleConnections;
+        ts.keepAlive = ScanCommand.parseDuration(keepAlive);
+        ts.maxRequestsPerHost = maxRequestsPerHost;
+        ts.maxRequests = Math.max(ts.maxRequests, maxRequestsPerHost * Math.max(1, parallelScans));
+        ts.maxInFlight = maxInFlight;
+        ts.protocol = httpProtocol;
+        ts.maxStreamsPerConnection = maxStreamsPerConnection;
+        ts.rateLimitRps = rateLimit;
+        ts.adaptiveRateLimit = adaptiveRateLimit;
+        return new HttpTransport(ts);
+    }
+
+    ExecutorService pool() {
+        return "virtual".equalsIgnoreCase(executor) ? Executors.newVirtualThreadPerTaskExecutor() : new ForkJoinPool(threads());
+    }
+}
@@ -0,0 +1,52 @@
+package ru.apidefender.core.http;
+
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.EventListener;
+import ru.apidefender.core.report.ReportModel;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Учёт мультиплексирования: сколько вызовов (HTTP/2-потоков) прошло через каждое соединение
+public class ConnectionTelemetry extends EventListener {
+    private static class PerConnection {
+        final String protocol;
+        final AtomicInteger calls = new AtomicInteger();
+        final AtomicInteger active = new AtomicInteger();
+        final AtomicInteger peakActive = new AtomicInteger();
+        PerConnection(String protocol) { this.protocol = protocol; }
+    }
+
+    private final Map<Connection, PerConnection> connections = new ConcurrentHashMap<>();
+
+    @Override
+    public void connectionAcquired(Call call, Connection connection) {
+        PerConnection pc = connections.computeIfAbsent(connection, c -> new PerConnection(c.protocol().toString()));
+        pc.calls.incrementAndGet();
+        int now = pc.active.incrementAndGet();
+        pc.peakActive.accumulateAndGet(now, Math::max);
+    }
+
+    @Override
+    public void connectionReleased(Call call, Connection connection) {
+        PerConnection pc = connections.get(connection);
+        if (pc != null) pc.active.decrementAndGet();
+    }
+
+    public void writeTo(ReportModel.Telemetry t) {
+        int conns = 0, calls = 0, maxCalls = 0, peak = 0;
+        for (PerConnection pc : connections.values()) {
+            conns++;
+            calls += pc.calls.get();
+            maxCalls = Math.max(maxCalls, pc.calls.get());
+            peak = Math.max(peak, pc.peakActive.get());
+            t.connectionsByProtocol.merge(pc.protocol, 1, Integer::sum);
+        }
+        t.connectionsUsed = conns;
+        t.streamsPerConnectionAvg = conns == 0 ? 0 : (double) calls / conns;
+        t.streamsPerConnectionMax = maxCalls;
+        t.peakConcurrentStreams = peak;
+    }
+}
@@ -3,45 +3,175 @@ package ru.apidefender.core.http;
 import okhttp3.*;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.time.Duration;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 public class HttpClient {
+    public static final String BAD_TOKEN = "invalid.invalid.invalid";
+
+    private final HttpTransport transport;
     private final OkHttpClient client;
     private final String token;
     private final boolean maskSecrets;
+    private final ResponseCache cache;
+    private final String scanner; // тег запросов для пофазной телеметрии
+    private final ScanDeadline deadline;
 
     public HttpClient(Duration timeout, String token, boolean maskSecrets) {
-        this.client = new OkHttpClient.Builder()
-                .callTimeout(timeout)
-                .build();
+        this(HttpTransport.shared(), timeout, token, maskSecrets);
+    }
+
+    public HttpClient(HttpTransport transport, Duration timeout, String token, boolean maskSecrets) {
+        this(transport, transport.client(timeout), token, maskSecrets, null, null, null);
+    }
+
+    private HttpClient(HttpTransport transport, OkHttpClient client, String token, boolean maskSecrets, ResponseCache cache, String scanner,
+                       ScanDeadline deadline) {
+        this.transport = transport;
+        this.client = client;
         this.token = token;
         this.maskSecrets = maskSecrets;
+        this.cache = cache;
+        this.scanner = scanner;
+        this.deadline = deadline;
     }
 
-    public Response request(String method, String url, Map<String, String> headers, RequestBody body) throws IOException {
-        Request.Builder b = new Request.Builder().url(url);
-        if (token != null && !token.isBlank()) b.header("Authorization", "Bearer " + token);
+    // Представления с другой идентичностью: тот же пул соединений и Dispatcher
+    public HttpClient withToken(String otherToken) { return new HttpClient(transport, client, otherToken, maskSecrets, cache, scanner, deadline); }
+    public HttpClient withoutToken() { return withToken(null); }
+    public HttpClient withBadToken() { return withToken(BAD_TOKEN); }
+
+    public HttpClient withTimeout(Duration timeout) {
+        return new HttpClient(transport, client.newBuilder().callTimeout(timeout).build(), token, maskSecrets, cache, scanner, deadline);
+    }
+
+    public HttpClient withCache(ResponseCache responseCache) { return new HttpClient(transport, client, token, maskSecrets, responseCache, scanner, deadline); }
+
+    // Запросы этого представления учитываются в NetworkTimings под именем сканера/фазы
+    public HttpClient forScanner(String name) { return new HttpClient(transport, client, token, maskSecrets, cache, name, deadline); }
+
+    public HttpClient withDeadline(ScanDeadline scanDeadline) { return new HttpClient(transport, client, token, maskSecrets, cache, scanner, scanDeadline); }
+
+    // Запросы к хосту URL сглаживает свой ограничитель частоты (--rate-limit или адаптивное снижение)
+    public boolean clientThrottled(String url) {
+        HttpUrl u = HttpUrl.parse(url);
+        return u != null && transport.rateLimiter().throttles(u.host());
+    }
+
+    // Эталонный GET без доп. заголовков: повторы в рамках скана берутся из кэша, одновременные — объединяются.
+    // Идентичность (токен) входит в ключ, поэтому анонимный и авторизованный ответы не смешиваются.
+    public ResponseSnapshot requestCached(String url) throws IOException {
+        return requestCached(url, null);
+    }
+
+    // observer получит полное тело, только если этот вызов и выполнил запрос (не попадание в кэш)
+    public ResponseSnapshot requestCached(String url, ResponseSnapshot.BodyObserver observer) throws IOException {
+        if (cache == null) return request("GET", url, null, null, observer);
+        String key = "GET " + url + "\n" + (token == null ? "" : token);
+        return cache.get(key, () -> request("GET", url, null, null, observer));
+    }
+
+    public ResponseSnapshot request(String method, String url, Map<String, String> headers, RequestBody body) throws IOException {
+        return request(method, url, headers, body, null);
+    }
+
+    public ResponseSnapshot request(String method, String url, Map<String, String> headers, RequestBody body,
+                                    ResponseSnapshot.BodyObserver observer) throws IOException {
+        Request.Builder b = newBuilder(url);
         if (headers != null) headers.forEach(b::header);
-        switch (method.toUpperCase()) {
-            case "GET" -> b.get();
-            case "POST" -> b.post(body != null ? body : RequestBody.create(new byte[0]));
-            case "PUT" -> b.put(body != null ? body : RequestBody.create(new byte[0]));
-            case "PATCH" -> b.patch(body != null ? body : RequestBody.create(new byte[0]));
-            case "DELETE" -> b.delete(body);
-            case "HEAD" -> b.head();
-            default -> throw new IllegalArgumentException("Неизвестный метод: " + method);
-        }
-        return client.newCall(b.build()).execute();
+        return execute(withMethod(b, method, body).build(), observer);
     }
 
     // Overload that allows duplicate headers by using addHeader
-    public Response requestWithMultiHeaders(String method, String url, Map<String, java.util.List<String>> headers, RequestBody body) throws IOException {
-        Request.Builder b = new Request.Builder().url(url);
-        if (token != null && !token.isBlank()) b.header("Authorization", "Bearer " + token);
+    public ResponseSnapshot requestWithMultiHeaders(String method, String url, Map<String, java.util.List<String>> headers, RequestBody body) throws IOException {
+        Request.Builder b = newBuilder(url);
         if (headers != null) headers.forEach((k, vs) -> {
             if (vs != null) for (String v : vs) b.addHeader(k, v);
         });
+        return execute(withMethod(b, method, body).build(), null);
+    }
+
+    // Тело читается сразу и один раз, соединение возвращается в пул до выхода из метода
+    private ResponseSnapshot execute(Request req, ResponseSnapshot.BodyObserver observer) throws IOException {
+        transport.acquireSlot();
+        Call call = null;
+        try {
+            call = newCall(req);
+            try (Response r = call.execute()) {
+                return ResponseSnapshot.capture(r, ResponseSnapshot.DEFAULT_MAX_BODY, observer);
+            }
+        } finally {
+            if (call != null && deadline != null) deadline.unregister(call);
+            transport.releaseSlot();
+        }
+    }
+
+    // С учётом срока скана: таймаут вызова не больше оставшегося времени, вызов отменяется вместе со сканом
+    private Call newCall(Request req) throws InterruptedIOException {
+        Call call = client.newCall(req);
+        if (deadline == null) return call;
+        deadline.checkNotCancelled();
+        long left = Math.max(1, deadline.remaining().toMillis());
+        long own = client.callTimeoutMillis();
+        call.timeout().timeout(own > 0 ? Math.min(own, left) : left, TimeUnit.MILLISECONDS);
+        deadline.register(call);
+        return call;
+    }
+
+    // Неблокирующий вариант: запрос уходит через Dispatcher.enqueue, число запросов «в полёте»
+    // ограничено окном транспорта, лишние ждут в очереди без занятия потока
+    public CompletableFuture<ResponseSnapshot> requestAsync(String method, String url, Map<String, String> headers, RequestBody body) {
+        CompletableFuture<ResponseSnapshot> result = new CompletableFuture<>();
+        Request req;
+        try {
+            Request.Builder b = newBuilder(url);
+            if (headers != null) headers.forEach(b::header);
+            req = withMethod(b, method, body).build();
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+            return result;
+        }
+        transport.whenSlotFree(() -> {
+            Call started;
+            try {
+                started = newCall(req);
+            } catch (IOException e) {
+                transport.releaseSlot();
+                result.completeExceptionally(e);
+                return;
+            }
+            started.enqueue(new Callback() {
+                @Override public void onFailure(Call call, IOException e) {
+                    if (deadline != null) deadline.unregister(call);
+                    transport.releaseSlot();
+                    result.completeExceptionally(e);
+                }
+                @Override public void onResponse(Call call, Response response) {
+                    try (response) {
+                        result.complete(ResponseSnapshot.capture(response, ResponseSnapshot.DEFAULT_MAX_BODY));
+                    } catch (Exception e) {
+                        result.completeExceptionally(e);
+                    } finally {
+                        if (deadline != null) deadline.unregister(call);
+                        transport.releaseSlot();
+                    }
+                }
+            });
+        });
+        return result;
+    }
+
+    private Request.Builder newBuilder(String url) {
+        Request.Builder b = new Request.Builder().url(url);
+        if (scanner != null) b.tag(String.class, scanner);
+        if (token != null && !token.isBlank()) b.header("Authorization", "Bearer " + token);
+        return b;
+    }
+
+    private static Request.Builder withMethod(Request.Builder b, String method, RequestBody body) {
         switch (method.toUpperCase()) {
             case "GET" -> b.get();
             case "POST" -> b.post(body != null ? body : RequestBody.create(new byte[0]));
@@ -49,16 +179,16 @@ public class HttpClient {
             case "PATCH" -> b.patch(body != null ? body : RequestBody.create(new byte[0]));
             case "DELETE" -> b.delete(body);
             case "HEAD" -> b.head();
-            default -> throw new IllegalArgumentException("Неподдерживаемый метод: " + method);
+            default -> throw new IllegalArgumentException("Неизвестный метод: " + method);
         }
-        return client.newCall(b.build()).execute();
+        return b;
     }
 
-    public static String dumpResponse(Response resp, boolean mask) throws IOException {
+    public static String dumpResponse(ResponseSnapshot resp, boolean mask) {
         StringBuilder sb = new StringBuilder();
-        sb.append(resp.request().method()).append(" ").append(resp.request().url()).append("\n");
-        for (String h : resp.request().headers().names()) {
-            String v = resp.request().header(h);
+        sb.append(resp.method()).append(" ").append(resp.url()).append("\n");
+        for (String h : resp.requestHeaders().names()) {
+            String v = resp.requestHeaders().get(h);
             sb.append(h).append(": ").append(mask? Masking.maskSecrets(v): v).append("\n");
         }
         sb.append("--\n");
@@ -67,7 +197,7 @@ public class HttpClient {
             String v = resp.header(h);
             sb.append(h).append(": ").append(mask? Masking.maskSecrets(v): v).append("\n");
         }
-        String body = resp.peekBody(Long.MAX_VALUE).string();
+        String body = resp.bodyString();
         sb.append("\n").append(mask? Masking.maskSecrets(body): body);
         return sb.toString();
     }
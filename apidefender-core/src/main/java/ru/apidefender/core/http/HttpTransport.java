@@ -0,0 +1,139 @@
+package ru.apidefender.core.http;
+
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+// Общий для процесса транспорт: один пул соединений и один Dispatcher на все HttpClient.
+// Клиенты с разными таймаутами/идентичностями получаются через newBuilder() и делят пул.
+public class HttpTransport {
+    public static class Settings {
+        public int maxIdleConnections = 32;
+        public Duration keepAlive = Duration.ofMinutes(5);
+        public int maxRequests = 128;
+        public int maxRequestsPerHost = 32;
+        public int maxInFlight = 256; // окно запросов «в полёте» (блокирующих и асинхронных)
+        public String protocol = "h2"; // h1 | h2 (ALPN по TLS) | h2c (HTTP/2 без TLS, prior knowledge)
+        public int maxStreamsPerConnection = 100; // 0 = без ограничения
+        public double rateLimitRps = 0; // потолок запросов/с на хост, 0 = без потолка
+        public boolean adaptiveRateLimit = true; // реагировать на 429/Retry-After
+    }
+
+    private static volatile HttpTransport shared;
+
+    private final Settings settings;
+    private final OkHttpClient base;
+    private final ConnectionTelemetry connectionTelemetry = new ConnectionTelemetry();
+    private final NetworkTimings networkTimings = new NetworkTimings(connectionTelemetry);
+    private final RateLimiter rateLimiter;
+    private final Semaphore window;
+    private final ConcurrentLinkedQueue<Runnable> pending;
+
+    public HttpTransport(Settings settings) {
+        this.settings = settings;
+        this.pending = new ConcurrentLinkedQueue<>();
+        this.window = new Semaphore(Math.max(1, settings.maxInFlight));
+        this.rateLimiter = new RateLimiter(settings.rateLimitRps, settings.adaptiveRateLimit);
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(Math.max(1, settings.maxRequests));
+        dispatcher.setMaxRequestsPerHost(Math.max(1, settings.maxRequestsPerHost));
+        ConnectionPool pool = new ConnectionPool(Math.max(0, settings.maxIdleConnections),
+                settings.keepAlive.toMillis(), TimeUnit.MILLISECONDS);
+        OkHttpClient.Builder b = new OkHttpClient.Builder()
+                .connectionPool(pool)
+                .dispatcher(dispatcher)
+                .protocols(protocols(settings.protocol))
+                .addInterceptor(rateLimiter)
+                .eventListenerFactory(networkTimings);
+        if (settings.maxStreamsPerConnection > 0) b.addNetworkInterceptor(new StreamLimiter(settings.maxStreamsPerConnection));
+        this.base = b.build();
+    }
+
+    // Транспорт одной цели пакетного скана: пул соединений, Dispatcher, окно запросов и лимитер общие,
+    // телеметрия соединений и таймингов — своя
+    private HttpTransport(HttpTransport parent) {
+        this.settings = parent.settings;
+        this.window = parent.window;
+        this.pending = parent.pending;
+        this.rateLimiter = parent.rateLimiter;
+        this.base = parent.base.newBuilder().eventListenerFactory(networkTimings).build();
+    }
+
+    public HttpTransport forTarget() { return new HttpTransport(this); }
+
+    static List<Protocol> protocols(String name) {
+        return switch (name == null ? "h2" : name.toLowerCase()) {
+            case "h1" -> List.of(Protocol.HTTP_1_1);
+            case "h2c" -> List.of(Protocol.H2_PRIOR_KNOWLEDGE);
+            case "h2" -> List.of(Protocol.HTTP_2, Protocol.HTTP_1_1);
+            default -> throw new IllegalArgumentException("Неизвестный протокол: " + name + " (ожидается h1|h2|h2c)");
+        };
+    }
+
+    // Первый вызов фиксирует настройки; последующие возвращают уже созданный транспорт
+    public static HttpTransport shared(Settings settings) {
+        HttpTransport t = shared;
+        if (t != null) return t;
+        synchronized (HttpTransport.class) {
+            if (shared == null) shared = new HttpTransport(settings);
+            return shared;
+        }
+    }
+
+    public static HttpTransport shared() { return shared(new Settings()); }
+
+    public Settings settings() { return settings; }
+
+    public ConnectionTelemetry connectionTelemetry() { return connectionTelemetry; }
+
+    public RateLimiter rateLimiter() { return rateLimiter; }
+
+    public NetworkTimings networkTimings() { return networkTimings; }
+
+    public OkHttpClient client(Duration callTimeout) {
+        return base.newBuilder().callTimeout(callTimeout).build();
+    }
+
+    // Блокирующий запрос ждёт места в окне; для виртуальных потоков это и есть ограничение параллелизма
+    void acquireSlot() throws InterruptedIOException {
+        try {
+            window.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Ожидание слота запроса прервано");
+        }
+    }
+
+    // Запускает задачу сразу, если в окне есть место, иначе ставит её в очередь ожидания
+    void whenSlotFree(Runnable start) {
+        pending.add(start);
+        drain();
+    }
+
+    void releaseSlot() {
+        window.release();
+        drain();
+    }
+
+    private void drain() {
+        while (!pending.isEmpty() && window.tryAcquire()) {
+            Runnable next = pending.poll();
+            if (next == null) { window.release(); continue; }
+            try { next.run(); }
+            catch (RuntimeException e) { window.release(); }
+        }
+    }
+
+    public void shutdown() {
+        base.dispatcher().executorService().shutdown();
+        base.connectionPool().evictAll();
+    }
+}
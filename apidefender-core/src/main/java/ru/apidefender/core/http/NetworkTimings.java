@@ -0,0 +1,145 @@
+package ru.apidefender.core.http;
+
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import ru.apidefender.core.report.ReportModel;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+// Пофазные тайминги каждого вызова (DNS, connect, TLS, запись запроса, TTFB, чтение тела) и переиспользование
+// соединений. Сводится по сканеру (тег запроса, см. HttpClient.forScanner) и по эндпоинту.
+// События соединений дополнительно передаются в ConnectionTelemetry, у OkHttp слушатель на вызов один.
+public class NetworkTimings implements EventListener.Factory {
+    private static final int MAX_ENDPOINTS = 200;
+    private static final String OTHER_ENDPOINTS = "(прочие)";
+    private static final Pattern ID_SEGMENT = Pattern.compile("\\d+|[0-9a-fA-F-]{16,}");
+
+    private static class Stats {
+        final LongAdder calls = new LongAdder();
+        final LongAdder failed = new LongAdder();
+        final LongAdder reused = new LongAdder();
+        final LongAdder dns = new LongAdder();
+        final LongAdder connect = new LongAdder();
+        final LongAdder tls = new LongAdder();
+        final LongAdder write = new LongAdder();
+        final LongAdder ttfb = new LongAdder();
+        final LongAdder read = new LongAdder();
+        final LongAdder total = new LongAdder();
+
+        void add(PhaseListener l, boolean ok) {
+            calls.increment();
+            if (!ok) failed.increment();
+            if (l.reused) reused.increment();
+            dns.add(span(l.dnsStart, l.dnsEnd));
+            connect.add(span(l.connectStart, l.connectEnd));
+            tls.add(span(l.tlsStart, l.tlsEnd));
+            write.add(span(l.writeStart, l.writeEnd));
+            ttfb.add(span(l.writeEnd, l.responseHeadersStart));
+            read.add(span(l.bodyStart, l.bodyEnd));
+            total.add(span(l.callStart, l.callEnd));
+        }
+
+        ReportModel.PhaseTimings toReport() {
+            ReportModel.PhaseTimings t = new ReportModel.PhaseTimings();
+            long n = calls.sum();
+            t.calls = n;
+            t.failed = failed.sum();
+            t.reusedConnections = reused.sum();
+            t.dnsMs = avgMs(dns, n);
+            t.connectMs = avgMs(connect, n);
+            t.tlsMs = avgMs(tls, n);
+            t.requestWriteMs = avgMs(write, n);
+            t.ttfbMs = avgMs(ttfb, n);
+            t.bodyReadMs = avgMs(read, n);
+            t.totalMs = avgMs(total, n);
+            return t;
+        }
+    }
+
+    private final ConnectionTelemetry connections;
+    private final Map<String, Stats> byScanner = new ConcurrentHashMap<>();
+    private final Map<String, Stats> byEndpoint = new ConcurrentHashMap<>();
+
+    public NetworkTimings(ConnectionTelemetry connections) { this.connections = connections; }
+
+    @Override
+    public EventListener create(Call call) { return new PhaseListener(); }
+
+    private void record(Call call, PhaseListener l, boolean ok) {
+        Request req = call.request();
+        String scanner = req.tag(String.class);
+        byScanner.computeIfAbsent(scanner != null ? scanner : "-", k -> new Stats()).add(l, ok);
+        String endpoint = req.method() + " " + normalizePath(req.url().encodedPath());
+        Stats s = byEndpoint.get(endpoint);
+        if (s == null) {
+            s = byEndpoint.size() < MAX_ENDPOINTS ? byEndpoint.computeIfAbsent(endpoint, k -> new Stats())
+                    : byEndpoint.computeIfAbsent(OTHER_ENDPOINTS, k -> new Stats());
+        }
+        s.add(l, ok);
+    }
+
+    // Идентификаторы в пути сворачиваются, чтобы пробы с разными ID попадали в один эндпоинт
+    static String normalizePath(String path) {
+        String[] segs = path.split("/", -1);
+        for (int i = 0; i < segs.length; i++) if (ID_SEGMENT.matcher(segs[i]).matches()) segs[i] = "{id}";
+        return String.join("/", segs);
+    }
+
+    public void writeTo(ReportModel.Telemetry t) {
+        byScanner.forEach((k, s) -> t.timingsByScanner.put(k, s.toReport()));
+        byEndpoint.forEach((k, s) -> t.timingsByEndpoint.put(k, s.toReport()));
+    }
+
+    private static long span(long start, long end) { return start > 0 && end >= start ? end - start : 0; }
+
+    private static double avgMs(LongAdder nanos, long n) { return n == 0 ? 0 : nanos.sum() / 1e6 / n; }
+
+    // События одного вызова приходят последовательно, поэтому поля без синхронизации
+    private class PhaseListener extends EventListener {
+        long callStart, callEnd;
+        long dnsStart, dnsEnd;
+        long connectStart, connectEnd;
+        long tlsStart, tlsEnd;
+        long writeStart, writeEnd;
+        long responseHeadersStart;
+        long bodyStart, bodyEnd;
+        boolean reused;
+
+        @Override public void callStart(Call call) { callStart = System.nanoTime(); }
+        @Override public void dnsStart(Call call, String domainName) { dnsStart = System.nanoTime(); }
+        @Override public void dnsEnd(Call call, String domainName, List<InetAddress> list) { dnsEnd = System.nanoTime(); }
+        @Override public void connectStart(Call call, InetSocketAddress addr, Proxy proxy) { connectStart = System.nanoTime(); }
+        @Override public void secureConnectStart(Call call) { tlsStart = System.nanoTime(); }
+        @Override public void secureConnectEnd(Call call, Handshake handshake) { tlsEnd = System.nanoTime(); }
+        @Override public void connectEnd(Call call, InetSocketAddress addr, Proxy proxy, Protocol protocol) { connectEnd = System.nanoTime(); }
+        @Override public void connectFailed(Call call, InetSocketAddress addr, Proxy proxy, Protocol protocol, IOException e) { connectEnd = System.nanoTime(); }
+
+        @Override public void connectionAcquired(Call call, Connection connection) {
+            if (connectStart == 0) reused = true;
+            connections.connectionAcquired(call, connection);
+        }
+        @Override public void connectionReleased(Call call, Connection connection) { connections.connectionReleased(call, connection); }
+
+        @Override public void requestHeadersStart(Call call) { if (writeStart == 0) writeStart = System.nanoTime(); }
+        @Override public void requestHeadersEnd(Call call, Request request) { writeEnd = System.nanoTime(); }
+        @Override public void requestBodyEnd(Call call, long byteCount) { writeEnd = System.nanoTime(); }
+        @Override public void responseHeadersStart(Call call) { responseHeadersStart = System.nanoTime(); }
+        @Override public void responseBodyStart(Call call) { bodyStart = System.nanoTime(); }
+        @Override public void responseBodyEnd(Call call, long byteCount) { bodyEnd = System.nanoTime(); }
+
+        @Override public void callEnd(Call call) { callEnd = System.nanoTime(); record(call, this, true); }
+        @Override public void callFailed(Call call, IOException ioe) { callEnd = System.nanoTime(); record(call, this, false); }
+    }
+}
@@ -0,0 +1,158 @@
+package ru.apidefender.core.http;
+
+import okhttp3.Interceptor;
+import okhttp3.Response;
+import ru.apidefender.core.report.ReportModel;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Token bucket на каждый хост с адаптацией AIMD: 429/Retry-After — уменьшаем темп вдвое и ставим паузу,
+// каждый успешный ответ — прибавляем ~1 rps в секунду до потолка
+public class RateLimiter implements Interceptor {
+    private static final double MIN_RATE = 0.5;
+    private static final double INITIAL_BACKOFF_RATE = 10.0; // если потолок не задан, а сервер уже ответил 429
+    private static final double UNLIMITED_AGAIN = 1000.0;
+    private static final long MAX_PAUSE_MS = 60_000L;
+    private static final long DEFAULT_PAUSE_MS = 1_000L;
+
+    private static class Bucket {
+        final ReentrantLock lock = new ReentrantLock();
+        double rate;
+        double tokens;
+        long lastRefill = System.nanoTime();
+        long pausedUntil;
+        int backoffs;
+        final LongAdder throttledNanos = new LongAdder();
+        Bucket(double rate) { this.rate = rate; this.tokens = Double.isInfinite(rate) ? 0 : Math.max(1, rate); }
+    }
+
+    private final double ceiling;
+    private final boolean adaptive;
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+
+    public RateLimiter(double ceilingRps, boolean adaptive) {
+        this.ceiling = ceilingRps > 0 ? ceilingRps : Double.POSITIVE_INFINITY;
+        this.adaptive = adaptive;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        String host = chain.request().url().host();
+        Bucket b = buckets.computeIfAbsent(host, h -> new Bucket(ceiling));
+        long waitNanos = reserve(b);
+        if (waitNanos > 0) pause(chain, b, waitNanos);
+        Response resp = chain.proceed(chain.request());
+        if (adaptive) onResponse(b, resp);
+        return resp;
+    }
+
+    private long reserve(Bucket b) {
+        b.lock.lock();
+        try {
+            long now = System.nanoTime();
+            long wait = Math.max(0, b.pausedUntil - now);
+            if (!Double.isInfinite(b.rate)) {
+                double burst = Math.max(1, b.rate);
+                b.tokens = Math.min(burst, b.tokens + (now - b.lastRefill) / 1e9 * b.rate);
+                b.lastRefill = now;
+                b.tokens -= 1;
+                if (b.tokens < 0) wait = Math.max(wait, (long) (-b.tokens / b.rate * 1e9));
+            }
+            return wait;
+        } finally {
+            b.lock.unlock();
+        }
+    }
+
+    // Спим короткими отрезками, чтобы отменённый вызов не ждал паузу до конца
+    private void pause(Chain chain, Bucket b, long nanos) throws IOException {
+        long start = System.nanoTime();
+        long deadline = start + nanos;
+        try {
+            for (long left = nanos; left > 0; left = deadline - System.nanoTime()) {
+                if (chain.call().isCanceled()) throw new IOException("Canceled");
+                Thread.sleep(Math.max(1, Math.min(100, left / 1_000_000L)));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Ожидание ограничителя частоты прервано");
+        } finally {
+            b.throttledNanos.add(System.nanoTime() - start);
+        }
+    }
+
+    private void onResponse(Bucket b, Response resp) {
+        String retryAfter = resp.header("Retry-After");
+        boolean throttled = resp.code() == 429 || (resp.code() == 503 && retryAfter != null);
+        b.lock.lock();
+        try {
+            if (throttled) {
+                b.backoffs++;
+                b.rate = Double.isInfinite(b.rate) ? Math.min(INITIAL_BACKOFF_RATE, ceiling) : Math.max(MIN_RATE, b.rate / 2);
+                b.tokens = Math.min(b.tokens, 0);
+                long pauseMs = retryAfter != null ? parseRetryAfterMs(retryAfter) : DEFAULT_PAUSE_MS;
+                b.pausedUntil = Math.max(b.pausedUntil, System.nanoTime() + Math.min(MAX_PAUSE_MS, pauseMs) * 1_000_000L);
+            } else if (!Double.isInfinite(b.rate) && b.rate < ceiling) {
+                b.rate = Math.min(ceiling, b.rate + 1.0 / Math.max(1.0, b.rate));
+                if (Double.isInfinite(ceiling) && b.rate >= UNLIMITED_AGAIN) b.rate = Double.POSITIVE_INFINITY;
+            }
+        } finally {
+            b.lock.unlock();
+        }
+    }
+
+    static long parseRetryAfterMs(String v) {
+        try {
+            return Math.max(0, Long.parseLong(v.trim())) * 1000L;
+        } catch (NumberFormatException e) {
+            try {
+                ZonedDateTime at = ZonedDateTime.parse(v.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+                return Math.max(0, at.toInstant().toEpochMilli() - System.currentTimeMillis());
+            } catch (Exception ignored) {
+                return DEFAULT_PAUSE_MS;
+            }
+        }
+    }
+
+    // Сглаживает ли лимитер сейчас запросы к хосту: задан потолок, темп снижен после 429 или идёт пауза.
+    // Тогда серия запросов до цели всплеском не дойдёт
+    public boolean throttles(String host) {
+        if (!Double.isInfinite(ceiling)) return true;
+        Bucket b = buckets.get(host);
+        if (b == null) return false;
+        b.lock.lock();
+        try {
+            return !Double.isInfinite(b.rate) || b.pausedUntil > System.nanoTime();
+        } finally {
+            b.lock.unlock();
+        }
+    }
+
+    public void writeTo(ReportModel.Telemetry t) {
+        buckets.forEach((host, b) -> writeTo(t, host, b));
+    }
+
+    // Только свой хост: в пакетном режиме лимитер общий для всех целей
+    public void writeTo(ReportModel.Telemetry t, String host) {
+        Bucket b = buckets.get(host);
+        if (b != null) writeTo(t, host, b);
+    }
+
+    private static void writeTo(ReportModel.Telemetry t, String host, Bucket b) {
+        t.throttledMs += b.throttledNanos.sum() / 1_000_000L;
+        b.lock.lock();
+        try {
+            t.rateLimitBackoffs += b.backoffs;
+            if (!Double.isInfinite(b.rate)) t.rateLimitRps.put(host, b.rate);
+        } finally {
+            b.lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package ru.apidefender.core.http;
+
+import ru.apidefender.core.report.ReportModel;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Кэш базовых ответов на время одного скана: ключ — метод+URL+идентичность, вытеснение LRU.
+// Одинаковые запросы, пришедшие одновременно, объединяются в один вызов (singleflight).
+// Используется только для идемпотентных «эталонных» GET, пробы сканеров идут мимо.
+// Размер ограничен суммой удерживаемых тел (maxBytes), а не числом записей: снимок держит до 5 МБ тела.
+// Ответ крупнее MAX_SHARE бюджета отдаётся ожидающим, но не запоминается
+public class ResponseCache {
+    public interface Loader { ResponseSnapshot load() throws IOException; }
+
+    private static final int MAX_SHARE = 8; // один ответ — не больше 1/8 бюджета
+    private static final long ENTRY_OVERHEAD = 1024; // заголовки, URL и сам снимок — грубо
+
+    private static final class Entry {
+        final CompletableFuture<ResponseSnapshot> future = new CompletableFuture<>();
+        long bytes; // 0, пока ответ не получен
+    }
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final long maxBytes;
+    private long retained; // под lock
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public ResponseCache(long maxBytes) {
+        this.maxBytes = Math.max(1, maxBytes);
+    }
+
+    public ResponseSnapshot get(String key, Loader loader) throws IOException {
+        Entry e;
+        boolean leader = false;
+        lock.lock();
+        try {
+            e = entries.get(key);
+            if (e == null) {
+                e = new Entry();
+                entries.put(key, e);
+                leader = true;
+                misses.increment();
+            } else if (e.future.isDone()) {
+                hits.increment();
+            } else {
+                coalesced.increment();
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (leader) return load(key, e, loader);
+        try {
+            return e.future.get();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Ожидание общего запроса прервано");
+        } catch (ExecutionException ee) {
+            Throwable c = ee.getCause();
+            if (c instanceof IOException io) throw io;
+            throw new IOException(c);
+        }
+    }
+
+    private ResponseSnapshot load(String key, Entry e, Loader loader) throws IOException {
+        try {
+            ResponseSnapshot r = loader.load();
+            e.future.complete(r);
+            // Ответы «сервер перегружен» не запоминаем: следующий сканер должен получить настоящий ответ
+            long bytes = r.bodySize() + ENTRY_OVERHEAD;
+            if (r.code() == 429 || r.code() == 503 || bytes > maxBytes / MAX_SHARE) forget(key, e);
+            else retain(key, e, bytes);
+            return r;
+        } catch (IOException | RuntimeException ex) {
+            forget(key, e);
+            e.future.completeExceptionally(ex);
+            throw ex;
+        }
+    }
+
+    // Учитывает полученный ответ и вытесняет самые давние готовые записи, пока сумма больше бюджета
+    private void retain(String key, Entry e, long bytes) {
+        lock.lock();
+        try {
+            if (entries.get(key) != e) return; // запись уже вытеснена
+            e.bytes = bytes;
+            retained += bytes;
+            Iterator<Entry> it = entries.values().iterator();
+            while (retained > maxBytes && it.hasNext()) {
+                Entry old = it.next();
+                if (old == e || !old.future.isDone()) continue; // ожидающие запросы не трогаем
+                retained -= old.bytes;
+                it.remove();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void forget(String key, Entry e) {
+        lock.lock();
+        try {
+            if (entries.remove(key, e)) retained -= e.bytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void writeTo(ReportModel.Telemetry t) {
+        t.responseCacheHits = hits.sum();
+        t.responseCacheCoalesced = coalesced.sum();
+        t.responseCacheMisses = misses.sum();
+    }
+}
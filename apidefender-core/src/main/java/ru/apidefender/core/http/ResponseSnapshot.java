@@ -0,0 +1,161 @@
+package ru.apidefender.core.http;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.MissingNode;
+import okhttp3.Headers;
+import okhttp3.MediaType;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+// Неизменяемый снимок ответа: тело читается один раз в буфер ограниченного размера,
+// строка и JSON-дерево строятся лениво и запоминаются — валидаторы, сканеры и трейсы делят один экземпляр.
+// Дерево большого тела не запоминается: снимки живут в кэше ответов, а дерево в разы больше самих байт
+public final class ResponseSnapshot {
+    public static final long DEFAULT_MAX_BODY = 5_000_000L;
+    private static final int MAX_MEMO_JSON = 256 * 1024;
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final JsonNode NOT_JSON = MissingNode.getInstance();
+
+    private final String method;
+    private final String url;
+    private final Headers requestHeaders;
+    private final int code;
+    private final String message;
+    private final Headers headers;
+    private final byte[] body;
+    private final boolean truncated;
+    private final long sentAtMillis;
+    private final long receivedAtMillis;
+    private volatile String text;
+    private volatile JsonNode json;
+
+    private ResponseSnapshot(String method, String url, Headers requestHeaders, int code, String message, Headers headers,
+                             byte[] body, boolean truncated, long sentAtMillis, long receivedAtMillis) {
+        this.method = method; this.url = url; this.requestHeaders = requestHeaders;
+        this.code = code; this.message = message; this.headers = headers;
+        this.body = body; this.truncated = truncated;
+        this.sentAtMillis = sentAtMillis; this.receivedAtMillis = receivedAtMillis;
+    }
+
+    // Читатель полного тела: получает поток до того, как снимок обрежет его лимитом (потоковая валидация)
+    public interface BodyObserver { void observe(int code, Headers headers, InputStream body) throws IOException; }
+
+    public static ResponseSnapshot capture(Response r, long maxBody) throws IOException {
+        return capture(r, maxBody, null);
+    }
+
+    public static ResponseSnapshot capture(Response r, long maxBody, BodyObserver observer) throws IOException {
+        byte[] bytes = new byte[0];
+        boolean truncated = false;
+        ResponseBody rb = r.body();
+        if (rb != null) {
+            BufferedSource src = rb.source();
+            Buffer buf = new Buffer();
+            long observed = 0;
+            if (observer != null) {
+                // наблюдатель читает тело сколько ему нужно, первые maxBody байт попутно остаются в снимке
+                Tee tee = new Tee(src, buf, maxBody);
+                observer.observe(r.code(), r.headers(), tee);
+                observed = tee.total;
+            }
+            while (buf.size() < maxBody) {
+                long n = src.read(buf, Math.min(8192L, maxBody - buf.size()));
+                if (n == -1) break;
+            }
+            truncated = observed > buf.size() || buf.size() >= maxBody && !src.exhausted();
+            bytes = buf.readByteArray();
+        }
+        return new ResponseSnapshot(r.request().method(), r.request().url().toString(), r.request().headers(),
+                r.code(), r.message(), r.headers(), bytes, truncated, r.sentRequestAtMillis(), r.receivedResponseAtMillis());
+    }
+
+    public String method() { return method; }
+    public String url() { return url; }
+    public Headers requestHeaders() { return requestHeaders; }
+    public int code() { return code; }
+    public String message() { return message; }
+    public Headers headers() { return headers; }
+    public String header(String name) { return headers.get(name); }
+    public boolean truncated() { return truncated; }
+    public int bodySize() { return body.length; }
+    public long sentAtMillis() { return sentAtMillis; }
+    public long receivedAtMillis() { return receivedAtMillis; }
+    public long latencyMillis() { return receivedAtMillis - sentAtMillis; }
+
+    public byte[] bodyBytes() { return body.clone(); }
+
+    public String bodyString() {
+        String t = text;
+        if (t == null) text = t = new String(body, charset());
+        return t;
+    }
+
+    // Префикс тела (по символам) — для эвристик, которым раньше хватало peekBody(n)
+    public String bodyString(int maxChars) {
+        String t = bodyString();
+        return t.length() > maxChars ? t.substring(0, maxChars) : t;
+    }
+
+    // Разобранное тело или null, если это не JSON (либо тело обрезано лимитом)
+    public JsonNode json() {
+        JsonNode j = json;
+        if (j == null) {
+            try {
+                j = body.length == 0 ? NOT_JSON : MAPPER.readTree(body);
+                if (j == null) j = NOT_JSON;
+            } catch (IOException e) {
+                j = NOT_JSON;
+            }
+            if (body.length <= MAX_MEMO_JSON || j == NOT_JSON) json = j;
+        }
+        return j == NOT_JSON ? null : j;
+    }
+
+    // Потоковый разбор тела без построения дерева
+    public JsonParser jsonParser() throws IOException {
+        return MAPPER.getFactory().createParser(body);
+    }
+
+    public boolean isJson() {
+        String ct = headers.get("Content-Type");
+        return ct != null && ct.contains("application/json");
+    }
+
+    private Charset charset() {
+        MediaType mt = MediaType.parse(headers.get("Content-Type") != null ? headers.get("Content-Type") : "");
+        Charset cs = mt != null ? mt.charset(StandardCharsets.UTF_8) : null;
+        return cs != null ? cs : StandardCharsets.UTF_8;
+    }
+
+    // Поток тела для наблюдателя с копией первых max байт в буфер снимка
+    private static final class Tee extends InputStream {
+        private final BufferedSource src;
+        private final Buffer copy;
+        private final long max;
+        long total;
+
+        Tee(BufferedSource src, Buffer copy, long max) { this.src = src; this.copy = copy; this.max = max; }
+
+        @Override public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+        }
+
+        @Override public int read(byte[] b, int off, int len) throws IOException {
+            int n = src.read(b, off, len);
+            if (n <= 0) return n;
+            total += n;
+            if (copy.size() < max) copy.write(b, off, (int) Math.min(n, max - copy.size()));
+            return n;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package ru.apidefender.core.http;
+
+import okhttp3.Call;
+
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Срок скана и токен отмены: HttpClient ограничивает каждый вызов оставшимся временем,
+// по истечении (или по cancel()) вызовы «в полёте» отменяются, а сканеры видят isCancelled()
+public class ScanDeadline {
+    private final long deadlineNanos;
+    private final Set<Call> inFlight = ConcurrentHashMap.newKeySet();
+    private volatile boolean cancelled;
+
+    public ScanDeadline(Duration budget) {
+        this.deadlineNanos = System.nanoTime() + budget.toNanos();
+    }
+
+    public Duration remaining() {
+        return Duration.ofNanos(Math.max(0, deadlineNanos - System.nanoTime()));
+    }
+
+    public boolean isCancelled() {
+        return cancelled || System.nanoTime() >= deadlineNanos;
+    }
+
+    public void cancel() {
+        cancelled = true;
+        for (Call c : inFlight) c.cancel();
+    }
+
+    void checkNotCancelled() throws InterruptedIOException {
+        if (isCancelled()) throw new InterruptedIOException("Скан остановлен: истёк срок");
+    }
+
+    void register(Call call) {
+        inFlight.add(call);
+        // cancel() мог пройти между проверкой и регистрацией
+        if (cancelled) call.cancel();
+    }
+
+    void unregister(Call call) {
+        inFlight.remove(call);
+    }
+}
@@ -0,0 +1,78 @@
+package ru.apidefender.core.http;
+
+import okhttp3.Connection;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Сетевой перехватчик: не более maxStreams одновременных обменов на одном соединении.
+// OkHttp не даёт задать клиентский предел потоков HTTP/2, поэтому ограничиваем до открытия потока.
+// Разрешение держится до закрытия тела ответа — поток HTTP/2 открыт, пока тело читается.
+// Соединения — слабые ключи: вытесненное из пула соединение уходит из таблицы вместе с семафором
+class StreamLimiter implements Interceptor {
+    private final int maxStreams;
+    private final Map<Connection, Semaphore> perConnection = Collections.synchronizedMap(new WeakHashMap<>());
+
+    StreamLimiter(int maxStreams) { this.maxStreams = maxStreams; }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Connection conn = chain.connection();
+        if (conn == null) return chain.proceed(chain.request());
+        Semaphore s = perConnection.computeIfAbsent(conn, c -> new Semaphore(maxStreams));
+        try {
+            s.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Ожидание потока соединения прервано");
+        }
+        Response r;
+        try {
+            r = chain.proceed(chain.request());
+        } catch (IOException | RuntimeException e) {
+            s.release();
+            throw e;
+        }
+        if (r.body() == null) {
+            s.release();
+            return r;
+        }
+        return r.newBuilder().body(new PermitBody(r.body(), s)).build();
+    }
+
+    // Тело ответа, возвращающее разрешение семафора при закрытии (один раз)
+    private static final class PermitBody extends ResponseBody {
+        private final ResponseBody delegate;
+        private final BufferedSource source;
+
+        PermitBody(ResponseBody delegate, Semaphore permit) {
+            this.delegate = delegate;
+            AtomicBoolean released = new AtomicBoolean();
+            this.source = Okio.buffer(new ForwardingSource(delegate.source()) {
+                @Override public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        if (released.compareAndSet(false, true)) permit.release();
+                    }
+                }
+            });
+        }
+
+        @Override public MediaType contentType() { return delegate.contentType(); }
+        @Override public long contentLength() { return delegate.contentLength(); }
+        @Override public BufferedSource source() { return source; }
+    }
+}
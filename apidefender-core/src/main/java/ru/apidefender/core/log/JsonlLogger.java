@@ -4,43 +4,245 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.time.Instant;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Асинхронный JSONL-логгер: log() только кладёт сообщение в ограниченный кольцевой буфер без блокировок,
+// один фоновый поток сериализует сообщения пачками и пишет их в stdout и в файл через открытый FileChannel,
+// сбрасывая вывод раз на пачку. Метка времени берётся как миллисекунды и форматируется писателем:
+// дата и время до секунды кэшируются. Переполнение: debug отбрасывается (в журнал попадёт число
+// пропущенных), info и error ждут места. close() дописывает буфер; незакрытые логгеры закрывает
+// общий shutdown hook, так что сообщения перед System.exit не теряются
+public class JsonlLogger implements AutoCloseable {
+    private static final int CAPACITY = 8192; // степень двойки
+    private static final int BATCH = 512;
+    private static final long IDLE_PARK_NS = 50_000_000L; // страховка от потерянного unpark
+    private static final Set<JsonlLogger> OPEN = ConcurrentHashMap.newKeySet();
+    private static final AtomicBoolean HOOK = new AtomicBoolean();
+
+    private record Entry(long ts, String level, String msg, String error) {}
 
-public class JsonlLogger {
     private final ObjectMapper mapper = new ObjectMapper();
     private final boolean debug;
     private final Path logFile; // optional separate JSONL file
+    private final ReentrantLock lock = new ReentrantLock(); // запись без писателя; не synchronized — не закрепляет виртуальный поток
+
+    // кольцевой буфер: слот свободен для позиции p, когда seq == p, и заполнен, когда seq == p + 1
+    private final AtomicReferenceArray<Entry> slots = new AtomicReferenceArray<>(CAPACITY);
+    private final AtomicLongArray seqs = new AtomicLongArray(CAPACITY);
+    private final AtomicLong tail = new AtomicLong();
+    private final LongAdder droppedDebug = new LongAdder();
+    private final Thread writer;
+    private volatile boolean sleeping;
+    private volatile boolean closed;
+
+    // состояние ниже трогает только поток writer (после его завершения — под lock)
+    private long head;
+    private long reportedDropped;
+    private FileChannel channel;
+    private boolean fileFailed;
+    private long cachedSecond = Long.MIN_VALUE;
+    private String cachedPrefix;
 
     public JsonlLogger(boolean debug) { this(debug, null); }
 
     public JsonlLogger(boolean debug, Path logFile) {
         this.debug = debug;
         this.logFile = logFile;
+        for (int i = 0; i < CAPACITY; i++) seqs.set(i, i);
+        this.writer = new Thread(this::drain, "log-writer");
+        writer.setDaemon(true);
+        writer.start();
+        OPEN.add(this);
+        if (HOOK.compareAndSet(false, true)) {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> { for (JsonlLogger l : OPEN) l.close(); }, "log-close"));
+        }
     }
 
     public void info(String message) { log("info", message, null); }
     public void debug(String message) { if (debug) log("debug", message, null); }
     public void error(String message, Throwable t) { log("error", message, t); }
 
-    private synchronized void log(String level, String message, Throwable t) {
+    private void log(String level, String message, Throwable t) {
+        Entry e = new Entry(System.currentTimeMillis(), level, message, t != null ? t.toString() : null);
+        while (!closed && writer.isAlive()) {
+            if (offer(e)) {
+                if (sleeping) LockSupport.unpark(writer);
+                // close() мог завершить писателя между проверкой и публикацией: сообщение допишем сами
+                if (closed) direct(null);
+                return;
+            }
+            if ("debug".equals(level)) {
+                droppedDebug.increment();
+                return;
+            }
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(100_000L);
+        }
+        direct(e);
+    }
+
+    // Запись без писателя (логгер закрыт или поток писателя упал): остаток буфера и сообщение — сразу
+    private void direct(Entry e) {
+        lock.lock();
+        try {
+            try {
+                writer.join();
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            StringBuilder sb = new StringBuilder();
+            Entry left;
+            while ((left = poll()) != null) append(sb, left);
+            if (e != null) append(sb, e);
+            if (sb.length() > 0) flush(sb);
+            if (closed) closeChannel();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean offer(Entry e) {
+        long pos = tail.get();
+        while (true) {
+            int i = (int) (pos & (CAPACITY - 1));
+            long dif = seqs.get(i) - pos;
+            if (dif == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) break;
+                pos = tail.get();
+            } else if (dif < 0) {
+                return false; // буфер полон
+            } else {
+                pos = tail.get();
+            }
+        }
+        int i = (int) (pos & (CAPACITY - 1));
+        slots.set(i, e);
+        seqs.set(i, pos + 1);
+        return true;
+    }
+
+    private Entry poll() {
+        int i = (int) (head & (CAPACITY - 1));
+        if (seqs.get(i) != head + 1) return null;
+        Entry e = slots.get(i);
+        slots.set(i, null);
+        seqs.set(i, head + CAPACITY);
+        head++;
+        return e;
+    }
+
+    private void drain() {
+        StringBuilder sb = new StringBuilder(64 * 1024);
+        while (true) {
+            int n = 0;
+            Entry e;
+            while (n < BATCH && (e = poll()) != null) {
+                append(sb, e);
+                n++;
+            }
+            long dropped = droppedDebug.sum();
+            if (dropped > reportedDropped) {
+                append(sb, new Entry(System.currentTimeMillis(), "info", "Журнал переполнен: пропущено сообщений debug: " + (dropped - reportedDropped), null));
+                reportedDropped = dropped;
+            }
+            if (sb.length() > 0) {
+                flush(sb);
+                continue;
+            }
+            if (closed) break;
+            sleeping = true;
+            // повторная проверка после объявления сна: производитель, опубликовавший сообщение раньше, нас не разбудит
+            if (seqs.get((int) (head & (CAPACITY - 1))) != head + 1 && !closed) LockSupport.parkNanos(IDLE_PARK_NS);
+            sleeping = false;
+        }
+    }
+
+    private void append(StringBuilder sb, Entry e) {
         try {
             ObjectNode node = mapper.createObjectNode();
-            node.put("ts", Instant.now().toString());
-            node.put("level", level);
-            node.put("msg", message);
-            if (t != null) node.put("error", t.toString());
-            String line = mapper.writeValueAsString(node);
-            System.out.println(line);
-            if (logFile != null) {
+            node.put("ts", timestamp(e.ts));
+            node.put("level", e.level);
+            node.put("msg", e.msg);
+            if (e.error != null) node.put("error", e.error);
+            sb.append(mapper.writeValueAsString(node)).append(System.lineSeparator());
+        } catch (IOException ignored) {}
+    }
+
+    // ISO-8601 как у Instant.toString, с точностью до миллисекунд; дата и время до секунды — из кэша
+    private String timestamp(long millis) {
+        long second = Math.floorDiv(millis, 1000L);
+        if (second != cachedSecond) {
+            String s = Instant.ofEpochSecond(second).toString();
+            cachedPrefix = s.substring(0, s.length() - 1) + ".";
+            cachedSecond = second;
+        }
+        int ms = (int) Math.floorMod(millis, 1000L);
+        return cachedPrefix + (ms < 10 ? "00" : ms < 100 ? "0" : "") + ms + "Z";
+    }
+
+    // Пачка строк — в stdout и файл, один сброс на пачку
+    private void flush(StringBuilder sb) {
+        String text = sb.toString();
+        sb.setLength(0);
+        System.out.print(text);
+        System.out.flush();
+        if (logFile == null || fileFailed) return;
+        try {
+            if (channel == null) {
                 try {
                     Files.createDirectories(logFile.getParent());
                 } catch (Exception ignored) {}
-                Files.writeString(logFile, line + System.lineSeparator(), StandardCharsets.UTF_8,
-                        Files.exists(logFile) ? java.nio.file.StandardOpenOption.APPEND : java.nio.file.StandardOpenOption.CREATE);
+                channel = FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            }
+            ByteBuffer b = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+            while (b.hasRemaining()) channel.write(b);
+        } catch (IOException e) {
+            fileFailed = true; // файл недоступен — остаётся stdout
+        }
+    }
+
+    // Дописывает буфер и закрывает файл; сообщения после close() пишутся сразу, без буфера (файл открывается на каждое)
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (closed) return;
+            closed = true;
+            OPEN.remove(this);
+            LockSupport.unpark(writer);
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
-        } catch (IOException ignored) { }
+            closeChannel();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void closeChannel() {
+        if (channel == null) return;
+        try {
+            channel.force(false);
+            channel.close();
+        } catch (IOException ignored) {}
+        channel = null;
     }
 }
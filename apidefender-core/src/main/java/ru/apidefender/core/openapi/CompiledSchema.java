@@ -0,0 +1,222 @@
+package ru.apidefender.core.openapi;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.util.*;
+
+// Скомпилированная JSON-схема ответа: граф валидаторов без $ref (ссылки уже связаны, циклы — обратными рёбрами),
+// allOf слит в один узел. Граф заполняет только SchemaCompiler, после публикации в кэше он не меняется
+// и безопасно используется из многих потоков. Тело проверяется потоком по JsonParser; путь до поля
+// собирается в строку только для ошибки.
+public final class CompiledSchema {
+    static final CompiledSchema ANY = new CompiledSchema();
+    private static final ObjectMapper TREES = new ObjectMapper();
+
+    String type; // null — тип не ограничен
+    Map<String, CompiledSchema> properties = Map.of();
+    List<String> required = List.of();
+    boolean closed; // additionalProperties: false при описанных properties
+    CompiledSchema items;
+    List<Choice> choices = List.of(); // oneOf/anyOf, в том числе пришедшие из ветвей allOf
+
+    record Choice(String keyword, CompiledSchema[] branches) {}
+
+    CompiledSchema() {}
+
+    // Путь до узла ответа: связный список от корня, строка строится лениво
+    private record Path(Path parent, String field, int index) {
+        @Override public String toString() {
+            StringBuilder sb = new StringBuilder();
+            append(sb);
+            return sb.toString();
+        }
+        private void append(StringBuilder sb) {
+            if (parent != null) parent.append(sb);
+            if (field != null) sb.append(parent == null ? "" : ".").append(field);
+            else sb.append('[').append(index).append(']');
+        }
+    }
+
+    // Соответствует ли узел схеме — без сбора ошибок (ветви oneOf/anyOf)
+    boolean matches(JsonNode node) {
+        return check(node, null, null);
+    }
+
+    // Итог потоковой проверки: сколько байт разобрано и почему остановились раньше конца тела
+    public static final class StreamResult {
+        public long bytes;
+        public boolean errorLimit; // набрано maxErrors ошибок
+        public boolean byteLimit;  // достигнут maxBytes
+        public boolean complete() { return !errorLimit && !byteLimit; }
+    }
+
+    // Потоковая проверка тела прямо по JsonParser, без дерева: память — стек открытых объектов, а не размер ответа.
+    // Поддеревья под oneOf/anyOf всё же собираются в дерево — ветви проверяются на целом значении.
+    // Некорректный JSON — IOException парсера (кроме остановки по лимитам)
+    public StreamResult validate(JsonParser p, String root, List<String> errs, int maxErrors, long maxBytes) throws IOException {
+        return walk(p, root, new Walk(errs, maxErrors, maxBytes, false));
+    }
+
+    // Поля ответа, которых нет в закрытой схеме (additionalProperties: false), в виде «путь:поле»; типы не проверяются
+    public StreamResult unknownFields(JsonParser p, String root, List<String> out, long maxBytes) throws IOException {
+        return walk(p, root, new Walk(out, Integer.MAX_VALUE, maxBytes, true));
+    }
+
+    private StreamResult walk(JsonParser p, String root, Walk w) throws IOException {
+        StreamResult res = new StreamResult();
+        try {
+            if (p.currentToken() == null && p.nextToken() == null) return res;
+            stream(p, new Path(null, root, -1), w);
+        } catch (Stop stop) {
+            if (stop == Stop.ERRORS) res.errorLimit = true; else res.byteLimit = true;
+        }
+        res.bytes = p.currentLocation().getByteOffset();
+        return res;
+    }
+
+    private record Walk(List<String> out, int maxErrors, long maxBytes, boolean unknownOnly) {
+        void error(Path path, String message) {
+            add(path + ": " + message);
+        }
+        void add(String line) {
+            out.add(line);
+            if (out.size() >= maxErrors) throw Stop.ERRORS;
+        }
+        void check(JsonParser p) {
+            if (maxBytes > 0 && p.currentLocation().getByteOffset() > maxBytes) throw Stop.BYTES;
+        }
+    }
+
+    // Остановка обхода по лимиту; без стека — это не ошибка, а выход из рекурсии
+    private static final class Stop extends RuntimeException {
+        static final Stop ERRORS = new Stop();
+        static final Stop BYTES = new Stop();
+        private Stop() { super(null, null, false, false); }
+    }
+
+    // Парсер стоит на первом токене значения; по выходу — на последнем токене этого значения
+    private void stream(JsonParser p, Path path, Walk w) throws IOException {
+        JsonToken t = p.currentToken();
+        if (!w.unknownOnly && !choices.isEmpty()) {
+            List<String> sub = new ArrayList<>();
+            check(TREES.readTree(p), path, sub);
+            for (String e : sub) w.add(e);
+            return;
+        }
+        if (type == null) { p.skipChildren(); return; }
+        switch (type) {
+            case "object" -> {
+                if (t != JsonToken.START_OBJECT) { mismatch(p, path, w, "ожидается object"); return; }
+                BitSet seen = new BitSet(required.size());
+                while (p.nextToken() == JsonToken.FIELD_NAME) {
+                    String name = p.currentName();
+                    p.nextToken();
+                    w.check(p);
+                    int ri = required.indexOf(name);
+                    if (ri >= 0) seen.set(ri);
+                    CompiledSchema child = properties.get(name);
+                    if (child != null) { child.stream(p, new Path(path, name, -1), w); continue; }
+                    if (closed) {
+                        if (w.unknownOnly) w.out.add(path + ":" + name);
+                        else w.error(path, "лишнее поле " + name);
+                    }
+                    p.skipChildren();
+                }
+                if (w.unknownOnly) return;
+                for (int i = 0; i < required.size(); i++) {
+                    if (!seen.get(i)) w.error(path, "отсутствует обязательное поле " + required.get(i));
+                }
+            }
+            case "array" -> {
+                if (t != JsonToken.START_ARRAY) { mismatch(p, path, w, "ожидается array"); return; }
+                int i = 0;
+                while (p.nextToken() != JsonToken.END_ARRAY) {
+                    w.check(p);
+                    if (items != null) items.stream(p, new Path(path, null, i), w); else p.skipChildren();
+                    i++;
+                }
+            }
+            case "string" -> { if (t != JsonToken.VALUE_STRING) mismatch(p, path, w, "ожидается string"); }
+            case "integer" -> { if (t != JsonToken.VALUE_NUMBER_INT) mismatch(p, path, w, "ожидается integer"); }
+            case "number" -> { if (t != JsonToken.VALUE_NUMBER_INT && t != JsonToken.VALUE_NUMBER_FLOAT) mismatch(p, path, w, "ожидается number"); }
+            case "boolean" -> { if (t != JsonToken.VALUE_TRUE && t != JsonToken.VALUE_FALSE) mismatch(p, path, w, "ожидается boolean"); }
+            default -> p.skipChildren();
+        }
+    }
+
+    private static void mismatch(JsonParser p, Path path, Walk w, String message) throws IOException {
+        if (!w.unknownOnly) w.error(path, message);
+        p.skipChildren();
+    }
+
+    // errs == null — режим проверки: первая ошибка прерывает обход
+    private boolean check(JsonNode node, Path path, List<String> errs) {
+        boolean ok = true;
+        for (Choice c : choices) {
+            boolean any = false;
+            for (CompiledSchema b : c.branches) if (b.matches(node)) { any = true; break; }
+            if (!any) {
+                if (errs == null) return false;
+                errs.add(path + ": " + c.keyword + " не выполнен");
+                ok = false;
+            }
+        }
+        if (type == null) return ok;
+        switch (type) {
+            case "object" -> {
+                if (!node.isObject()) return fail(path, "ожидается object", errs);
+                for (String r : required) {
+                    if (node.has(r)) continue;
+                    if (errs == null) return false;
+                    errs.add(path + ": отсутствует обязательное поле " + r);
+                    ok = false;
+                }
+                if (closed) {
+                    Iterator<String> it = node.fieldNames();
+                    while (it.hasNext()) {
+                        String fn = it.next();
+                        if (!properties.containsKey(fn)) {
+                            if (errs == null) return false;
+                            errs.add(path + ": лишнее поле " + fn);
+                            ok = false;
+                        }
+                    }
+                }
+                for (Map.Entry<String, CompiledSchema> e : properties.entrySet()) {
+                    JsonNode child = node.get(e.getKey());
+                    if (child == null) continue;
+                    if (!e.getValue().check(child, errs == null ? null : new Path(path, e.getKey(), -1), errs)) {
+                        if (errs == null) return false;
+                        ok = false;
+                    }
+                }
+            }
+            case "array" -> {
+                if (!node.isArray()) return fail(path, "ожидается array", errs);
+                if (items != null) {
+                    for (int i = 0; i < node.size(); i++) {
+                        if (!items.check(node.get(i), errs == null ? null : new Path(path, null, i), errs)) {
+                            if (errs == null) return false;
+                            ok = false;
+                        }
+                    }
+                }
+            }
+            case "string" -> { if (!node.isTextual()) return fail(path, "ожидается string", errs); }
+            case "integer" -> { if (!node.isIntegralNumber()) return fail(path, "ожидается integer", errs); }
+            case "number" -> { if (!node.isNumber()) return fail(path, "ожидается number", errs); }
+            case "boolean" -> { if (!node.isBoolean()) return fail(path, "ожидается boolean", errs); }
+            default -> {}
+        }
+        return ok;
+    }
+
+    private static boolean fail(Path path, String message, List<String> errs) {
+        if (errs != null) errs.add(path + ": " + message);
+        return false;
+    }
+}
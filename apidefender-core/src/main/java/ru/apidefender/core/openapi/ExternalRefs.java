@@ -0,0 +1,111 @@
+package ru.apidefender.core.openapi;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+// Внешние $ref (файлы рядом со спецификацией: schemas/user.yaml#/User) переносятся в сам документ:
+// цель ссылки копируется в раздел x-apidefender-external, ссылка переписывается на локальную.
+// Дальше спецификация — один самодостаточный документ: SchemaCompiler, хэши операций и снимок
+// работают только с локальными ссылками. Ссылки на пути (paths: /x: $ref: ...) подставляются на место.
+// URL (http://...) не загружаются, битые ссылки остаются как есть
+final class ExternalRefs {
+    static final String SECTION = "x-apidefender-external";
+
+    private final Path rootFile;
+    private final ObjectNode section = JsonNodeFactory.instance.objectNode();
+    private final Map<Path, JsonNode> docs = new HashMap<>();
+    final Map<Path, String> inputs = new LinkedHashMap<>(); // прочитанные внешние файлы -> sha-256
+
+    private ExternalRefs(Path rootFile) {
+        this.rootFile = rootFile;
+    }
+
+    // Раскрывает ссылки в root на месте; возвращает внешние файлы, от которых зависит документ
+    static Map<Path, String> resolve(Path rootFile, JsonNode root) throws IOException {
+        ExternalRefs refs = new ExternalRefs(rootFile);
+        if (!(root instanceof ObjectNode o)) return refs.inputs;
+        refs.walk(o, rootFile);
+        if (!refs.section.isEmpty()) o.set(SECTION, refs.section);
+        JsonNode paths = o.path("paths");
+        if (paths instanceof ObjectNode po) {
+            for (String p : fieldNames(po)) {
+                JsonNode item = po.get(p);
+                JsonNode ref = item.get("$ref");
+                if (ref == null || !ref.isTextual() || !ref.asText().startsWith("#/")) continue;
+                JsonNode target = o.at(ref.asText().substring(1));
+                if (target.isObject()) po.set(p, target.deepCopy());
+            }
+        }
+        return refs.inputs;
+    }
+
+    private void walk(JsonNode n, Path base) throws IOException {
+        if (n instanceof ObjectNode o) {
+            JsonNode ref = o.get("$ref");
+            if (ref != null && ref.isTextual()) {
+                String local = localize(ref.asText(), base);
+                if (local != null) o.put("$ref", local);
+            }
+            for (String f : fieldNames(o)) walk(o.get(f), base);
+        } else if (n.isArray()) {
+            for (JsonNode c : n) walk(c, base);
+        }
+    }
+
+    // Локальная ссылка вместо внешней; null — ссылку не трогаем
+    private String localize(String ref, Path base) throws IOException {
+        int hash = ref.indexOf('#');
+        String file = hash < 0 ? ref : ref.substring(0, hash);
+        String pointer = hash < 0 ? "" : ref.substring(hash + 1);
+        if (file.isEmpty() && base.equals(rootFile)) return null;
+        if (file.contains("://")) return null;
+        Path target = file.isEmpty() ? base : base.resolveSibling(file).normalize();
+        if (target.equals(rootFile)) return "#" + pointer;
+        if (!Files.isRegularFile(target)) return null;
+        Path dir = rootFile.getParent();
+        String key = (dir != null ? dir.relativize(target) : target).toString().replace('\\', '/') + "#" + pointer;
+        String local = "#/" + SECTION + "/" + key.replace("~", "~0").replace("/", "~1");
+        if (!section.has(key)) {
+            JsonNode doc = doc(target);
+            JsonNode t = pointer.isEmpty() ? doc : doc.at(pointer);
+            if (t.isMissingNode()) return null;
+            JsonNode copy = t.deepCopy();
+            section.set(key, copy); // до обхода: циклические ссылки замыкаются на уже заведённый ключ
+            walk(copy, target);
+        }
+        return local;
+    }
+
+    private JsonNode doc(Path file) throws IOException {
+        JsonNode d = docs.get(file);
+        if (d != null) return d;
+        byte[] bytes = Files.readAllBytes(file);
+        d = mapperFor(bytes).readTree(bytes);
+        docs.put(file, d);
+        inputs.put(file, OpenApiLoader.sha256(bytes));
+        return d;
+    }
+
+    // JSON, если первый значимый символ — «{» (пробелы и UTF-8 BOM пропускаются), иначе YAML
+    static ObjectMapper mapperFor(byte[] bytes) {
+        int i = 0;
+        if (bytes.length >= 3 && (bytes[0] & 0xFF) == 0xEF && (bytes[1] & 0xFF) == 0xBB && (bytes[2] & 0xFF) == 0xBF) i = 3;
+        while (i < bytes.length && Character.isWhitespace(bytes[i])) i++;
+        return i < bytes.length && bytes[i] == '{' ? JSON : OpenApiLoader.yamlMapper();
+    }
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private static List<String> fieldNames(JsonNode o) {
+        List<String> names = new ArrayList<>();
+        o.fieldNames().forEachRemaining(names::add);
+        return names;
+    }
+}
@@ -2,33 +2,154 @@ package ru.apidefender.core.openapi;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
 
 public class OpenApiLoader {
+    public static final List<String> METHODS = List.of("get","post","put","patch","delete","head","options","trace");
+
     public static class LoadedSpec {
         public final JsonNode root; // raw tree
         public final String version;
         public final String firstServerUrl;
-        public LoadedSpec(JsonNode root, String version, String firstServerUrl) {
-            this.root = root; this.version = version; this.firstServerUrl = firstServerUrl;
+        public final Map<String,String> operationHashes; // "GET /path" -> sha-256 операции
+        public final SchemaCompiler schemas; // скомпилированные схемы ответов, живут вместе со спецификацией
+        public final PathRouter router; // шаблоны путей: конкретный путь -> шаблон и параметры
+        public final OperationIndex operations; // операции, разобранные один раз для всех сканеров
+        public final String sha256; // хэш корневого файла спецификации
+        public final String contentHash; // хэш всех входов: корневого файла и внешних $ref
+        public final long lines; // строк в корневом файле
+        public final List<Path> inputs; // корневой файл и внешние файлы $ref
+        public LoadedSpec(JsonNode root, String version, String firstServerUrl, Map<String,String> operationHashes,
+                          String sha256, String contentHash, long lines, List<Path> inputs) {
+            this.root = root; this.version = version; this.firstServerUrl = firstServerUrl; this.operationHashes = operationHashes;
+            this.sha256 = sha256; this.contentHash = contentHash; this.lines = lines; this.inputs = List.copyOf(inputs);
+            this.schemas = new SchemaCompiler(root);
+            this.router = PathRouter.of(root);
+            this.operations = new OperationIndex(root, router, schemas);
         }
     }
 
+    private final ObjectMapper canonicalJson = new ObjectMapper();
+    private final Path snapshotDir; // каталог двоичных снимков; null — без снимков
+
+    public OpenApiLoader() { this(null); }
+
+    public OpenApiLoader(Path snapshotDir) { this.snapshotDir = snapshotDir; }
+
+    // Парсер YAML (SnakeYAML) загружается, только когда спецификация или манифест действительно в YAML:
+    // отдельный класс не даёт верификатору подтянуть YAMLFactory вместе с загрузчиком
+    public static ObjectMapper yamlMapper() { return Yaml.mapper(); }
+
+    private static final class Yaml {
+        // лимит SnakeYAML по умолчанию (3 МБ) меньше крупных спецификаций
+        private static final int CODE_POINT_LIMIT = 512 * 1024 * 1024;
+
+        static ObjectMapper mapper() {
+            org.yaml.snakeyaml.LoaderOptions opts = new org.yaml.snakeyaml.LoaderOptions();
+            opts.setCodePointLimit(CODE_POINT_LIMIT);
+            return new ObjectMapper(com.fasterxml.jackson.dataformat.yaml.YAMLFactory.builder().loaderOptions(opts).build());
+        }
+    }
+
+    // Файл читается один раз: по тем же байтам считаются хэш и строки. Есть годный снимок — дерево
+    // и хэши операций берутся из него, иначе спецификация разбирается, внешние $ref переносятся в документ,
+    // и результат сохраняется снимком для следующих запусков
     public LoadedSpec load(Path path) throws IOException {
-        byte[] bytes = Files.readAllBytes(path);
-        String content = new String(bytes);
-        ObjectMapper mapper = content.trim().startsWith("{")? new ObjectMapper(): new ObjectMapper(new YAMLFactory());
-        JsonNode root = mapper.readTree(content);
+        Path file = path.toAbsolutePath().normalize();
+        byte[] bytes = Files.readAllBytes(file);
+        String hash = sha256(bytes);
+        if (snapshotDir != null) {
+            LoadedSpec cached = SpecSnapshot.read(snapshotDir, file, hash);
+            if (cached != null) return cached;
+        }
+        JsonNode root = ExternalRefs.mapperFor(bytes).readTree(bytes);
+        Map<Path, String> external = ExternalRefs.resolve(file, root);
         String version = root.path("openapi").asText("3.x");
         String server = null;
         if (root.has("servers") && root.get("servers").isArray() && root.get("servers").size()>0) {
             server = root.get("servers").get(0).path("url").asText(null);
         }
-        return new LoadedSpec(root, version, server);
+        List<Path> inputs = new ArrayList<>();
+        inputs.add(file);
+        inputs.addAll(external.keySet());
+        LoadedSpec spec = new LoadedSpec(root, version, server, operationHashes(root), hash, contentHash(hash, external.values()), lines(bytes), inputs);
+        if (snapshotDir != null) SpecSnapshot.write(snapshotDir, spec, external);
+        return spec;
+    }
+
+    // Без внешних файлов совпадает с хэшем корневого файла
+    static String contentHash(String rootHash, Collection<String> external) {
+        if (external.isEmpty()) return rootHash;
+        return sha256((rootHash + "|" + String.join("|", external)).getBytes(java.nio.charset.StandardCharsets.UTF_8));
     }
-}
 
+    private static long lines(byte[] bytes) {
+        long n = 0;
+        for (byte b : bytes) if (b == '\n') n++;
+        return bytes.length > 0 && bytes[bytes.length - 1] != '\n' ? n + 1 : n;
+    }
+
+    // Хэш операции считается по её узлу, параметрам пути и действующей security-схеме с раскрытыми $ref
+    // и упорядоченными ключами: перестановка полей или вынос схемы в components хэш не меняют,
+    // а правка схемы, на которую ссылается операция, — меняет
+    Map<String,String> operationHashes(JsonNode root) throws IOException {
+        Map<String,String> out = new LinkedHashMap<>();
+        Iterator<Map.Entry<String, JsonNode>> paths = root.path("paths").fields();
+        while (paths.hasNext()) {
+            Map.Entry<String, JsonNode> e = paths.next();
+            JsonNode item = e.getValue();
+            for (String m : METHODS) {
+                JsonNode op = item.get(m);
+                if (op == null) continue;
+                ObjectNode subject = JsonNodeFactory.instance.objectNode();
+                subject.set("operation", op);
+                if (item.has("parameters")) subject.set("pathParameters", item.get("parameters"));
+                if (!op.has("security") && root.has("security")) subject.set("security", root.get("security"));
+                out.put(m.toUpperCase() + " " + e.getKey(), sha256(canonicalJson.writeValueAsBytes(canonical(subject, root, new HashSet<>()))));
+            }
+        }
+        return out;
+    }
+
+    private static JsonNode canonical(JsonNode n, JsonNode root, Set<String> refs) {
+        if (n.isObject()) {
+            JsonNode ref = n.get("$ref");
+            if (ref != null && ref.isTextual()) {
+                String r = ref.asText();
+                JsonNode target = r.startsWith("#/") ? root.at(r.substring(1)) : null;
+                // внешняя, битая или циклическая ссылка хэшируется как есть
+                if (target == null || target.isMissingNode() || !refs.add(r)) return n;
+                try { return canonical(target, root, refs); } finally { refs.remove(r); }
+            }
+            List<String> names = new ArrayList<>();
+            n.fieldNames().forEachRemaining(names::add);
+            Collections.sort(names);
+            ObjectNode o = JsonNodeFactory.instance.objectNode();
+            for (String f : names) o.set(f, canonical(n.get(f), root, refs));
+            return o;
+        }
+        if (n.isArray()) {
+            ArrayNode a = JsonNodeFactory.instance.arrayNode();
+            for (JsonNode it : n) a.add(canonical(it, root, refs));
+            return a;
+        }
+        return n;
+    }
+
+    static String sha256(byte[] data) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package ru.apidefender.core.openapi;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.MissingNode;
+
+import java.util.*;
+
+// Операции спецификации, разобранные один раз: параметры по месту (path/query/header/cookie) с учётом
+// параметров уровня пути, тело запроса и ответы по media type, действующие требования security и теги.
+// Локальные $ref у параметров, тел и ответов уже раскрыты. Живёт в LoadedSpec вместе с PathRouter
+// и SchemaCompiler, после построения не меняется — сканеры читают его без обхода дерева спецификации
+public final class OperationIndex {
+    public record Parameter(String name, String in, boolean required, JsonNode schema) {}
+
+    public static final class Response {
+        public final String status; // "200", "2XX" или "default"
+        public final Map<String, JsonNode> content; // media type -> schema (MissingNode, если схемы нет)
+        public final List<String> headers; // описанные заголовки ответа
+        private final Operation op;
+
+        private Response(Operation op, String status, JsonNode node) {
+            this.op = op;
+            this.status = status;
+            Map<String, JsonNode> content = new LinkedHashMap<>();
+            node.path("content").fields().forEachRemaining(e -> content.put(e.getKey(), e.getValue().path("schema")));
+            this.content = Collections.unmodifiableMap(content);
+            List<String> headers = new ArrayList<>();
+            node.path("headers").fieldNames().forEachRemaining(headers::add);
+            this.headers = List.copyOf(headers);
+        }
+
+        // Скомпилированная схема тела для media type; null — не описана
+        public CompiledSchema schema(String mediaType) {
+            JsonNode s = content.get(mediaType);
+            if (s == null || s.isMissingNode()) return null;
+            return op.index.schemas.compiled(op.method.toLowerCase(Locale.ROOT) + " " + op.path + " " + status + " " + mediaType, () -> s);
+        }
+
+        // Описан ли Content-Type ответа (без учёта параметров вроде charset)
+        public boolean describes(String contentType) {
+            for (String mt : content.keySet()) if (contentType.contains(mt)) return true;
+            return false;
+        }
+    }
+
+    public static final class Operation {
+        public final String method; // GET, POST, ...
+        public final String path; // шаблон пути
+        public final String key; // "GET /users/{id}", как в operationHashes и отчёте
+        public final String operationId;
+        public final List<String> tags;
+        public final Map<String, List<Parameter>> parameters; // in -> параметры
+        public final Map<String, JsonNode> requestBody; // media type -> schema
+        public final boolean requestBodyRequired;
+        public final Map<String, Response> responses; // код -> ответ, в порядке спецификации
+        public final List<Map<String, List<String>>> security; // действующие требования: операции или корня
+        private final OperationIndex index;
+
+        private Operation(OperationIndex index, String method, String path, JsonNode item, JsonNode op) {
+            this.index = index;
+            this.method = method.toUpperCase(Locale.ROOT);
+            this.path = path;
+            this.key = this.method + " " + path;
+            this.operationId = op.path("operationId").asText(null);
+            List<String> tags = new ArrayList<>();
+            op.path("tags").forEach(t -> tags.add(t.asText()));
+            this.tags = List.copyOf(tags);
+
+            // параметры операции переопределяют одноимённые параметры пути
+            Map<String, Parameter> params = new LinkedHashMap<>();
+            for (JsonNode src : List.of(item.path("parameters"), op.path("parameters"))) {
+                for (JsonNode p : src) {
+                    JsonNode n = index.deref(p);
+                    String name = n.path("name").asText(null), in = n.path("in").asText(null);
+                    if (name == null || in == null) continue;
+                    params.put(in + ":" + name, new Parameter(name, in, "path".equals(in) || n.path("required").asBoolean(false), n.path("schema")));
+                }
+            }
+            Map<String, List<Parameter>> byIn = new LinkedHashMap<>();
+            for (Parameter p : params.values()) byIn.computeIfAbsent(p.in(), k -> new ArrayList<>()).add(p);
+            byIn.replaceAll((k, v) -> List.copyOf(v));
+            this.parameters = Collections.unmodifiableMap(byIn);
+
+            JsonNode body = index.deref(op.path("requestBody"));
+            Map<String, JsonNode> req = new LinkedHashMap<>();
+            body.path("content").fields().forEachRemaining(e -> req.put(e.getKey(), e.getValue().path("schema")));
+            this.requestBody = Collections.unmodifiableMap(req);
+            this.requestBodyRequired = body.path("required").asBoolean(false);
+
+            Map<String, Response> responses = new LinkedHashMap<>();
+            op.path("responses").fields().forEachRemaining(e -> responses.put(e.getKey(), new Response(this, e.getKey(), index.deref(e.getValue()))));
+            this.responses = Collections.unmodifiableMap(responses);
+
+            JsonNode sec = op.has("security") ? op.get("security") : index.root.path("security");
+            List<Map<String, List<String>>> security = new ArrayList<>();
+            for (JsonNode alt : sec) {
+                Map<String, List<String>> r = new LinkedHashMap<>();
+                alt.fields().forEachRemaining(e -> {
+                    List<String> scopes = new ArrayList<>();
+                    e.getValue().forEach(s -> scopes.add(s.asText()));
+                    r.put(e.getKey(), List.copyOf(scopes));
+                });
+                security.add(Collections.unmodifiableMap(r));
+            }
+            this.security = List.copyOf(security);
+        }
+
+        public List<Parameter> parameters(String in) { return parameters.getOrDefault(in, List.of()); }
+
+        // Ответ для кода: точный, затем диапазон (2XX), затем default; null — код не описан
+        public Response response(int code) {
+            Response r = responses.get(Integer.toString(code));
+            if (r == null) r = responses.get((code / 100) + "XX");
+            if (r == null) r = responses.get("default");
+            return r;
+        }
+
+        // Операция доступна без авторизации: требований нет или среди них пустое ({})
+        public boolean anonymous() {
+            if (security.isEmpty()) return true;
+            for (Map<String, List<String>> r : security) if (r.isEmpty()) return true;
+            return false;
+        }
+    }
+
+    public final PathRouter router;
+    public final SchemaCompiler schemas;
+    private final JsonNode root;
+    private final List<Operation> operations;
+    private final List<String> paths;
+    private final Map<String, Operation> byKey = new HashMap<>();
+    private final Map<String, List<Operation>> byPath = new HashMap<>();
+
+    public OperationIndex(JsonNode root, PathRouter router, SchemaCompiler schemas) {
+        this.root = root;
+        this.router = router;
+        this.schemas = schemas;
+        List<Operation> ops = new ArrayList<>();
+        List<String> paths = new ArrayList<>();
+        Iterator<Map.Entry<String, JsonNode>> it = root.path("paths").fields();
+        while (it.hasNext()) {
+            Map.Entry<String, JsonNode> e = it.next();
+            paths.add(e.getKey());
+            List<Operation> at = new ArrayList<>();
+            for (String m : OpenApiLoader.METHODS) {
+                JsonNode op = e.getValue().get(m);
+                if (op == null || !op.isObject()) continue;
+                Operation o = new Operation(this, m, e.getKey(), e.getValue(), op);
+                at.add(o);
+                byKey.put(o.key, o);
+            }
+            ops.addAll(at);
+            byPath.put(e.getKey(), List.copyOf(at));
+        }
+        this.operations = List.copyOf(ops);
+        this.paths = List.copyOf(paths);
+    }
+
+    // Все операции в порядке спецификации
+    public List<Operation> operations() { return operations; }
+
+    // Пути-шаблоны в порядке спецификации
+    public List<String> paths() { return paths; }
+
+    public Operation get(String method, String path) { return byKey.get(method.toUpperCase(Locale.ROOT) + " " + path); }
+
+    public boolean has(String method, String path) { return get(method, path) != null; }
+
+    // Операции пути-шаблона
+    public List<Operation> at(String path) { return byPath.getOrDefault(path, List.of()); }
+
+    // Локальный $ref раскрывается (цепочка ссылок — до 8 шагов); внешний или битый — пустой узел
+    private JsonNode deref(JsonNode n) {
+        for (int i = 0; i < 8 && n.has("$ref"); i++) {
+            String ref = n.get("$ref").asText();
+            n = ref.startsWith("#/") ? root.at(ref.substring(1)) : MissingNode.getInstance();
+        }
+        return n;
+    }
+}
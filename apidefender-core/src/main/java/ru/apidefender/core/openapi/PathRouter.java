@@ -0,0 +1,167 @@
+package ru.apidefender.core.openapi;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.*;
+import java.util.function.Function;
+
+// Маршрутизатор путей OpenAPI: дерево по сегментам, строится один раз на спецификацию.
+// Конкретный путь (/users/123?x=1) сопоставляется шаблону (/users/{id}) с извлечением параметров
+// за проход по сегментам: литеральный сегмент важнее параметра, к параметру возвращаемся,
+// только если литеральная ветка не дошла до шаблона. Сегмент вида {name}.json — параметр с префиксом/суффиксом.
+// Шаблоны разворачиваются в пути без регулярных выражений. После построения не меняется
+public final class PathRouter {
+    public static final class Template {
+        public final String path;
+        public final List<String> params; // имена параметров по порядку
+        public final Set<String> methods; // GET, POST, ... (пусто, если построен не из спецификации)
+        private final Segment[] segments;
+
+        private Template(String path, Segment[] segments, Set<String> methods) {
+            this.path = path;
+            this.segments = segments;
+            this.methods = methods;
+            List<String> names = new ArrayList<>();
+            for (Segment s : segments) if (s.param != null) names.add(s.param);
+            this.params = List.copyOf(names);
+        }
+
+        public boolean templated() { return !params.isEmpty(); }
+
+        // Подстановка значения каждого параметра; значения не кодируются
+        public String expand(Function<String, String> values) {
+            if (!templated()) return path;
+            StringBuilder sb = new StringBuilder(path.length() + 16);
+            for (Segment s : segments) {
+                sb.append('/');
+                if (s.param == null) sb.append(s.literal);
+                else sb.append(s.prefix).append(values.apply(s.param)).append(s.suffix);
+            }
+            return sb.length() == 0 ? "/" : sb.toString();
+        }
+
+        public String expand(String value) { return expand(name -> value); }
+    }
+
+    public record Match(Template template, Map<String, String> params) {}
+
+    // Сегмент шаблона: литерал или параметр с необязательными префиксом и суффиксом
+    private record Segment(String literal, String prefix, String param, String suffix) {
+        static Segment parse(String s) {
+            int open = s.indexOf('{');
+            int close = open < 0 ? -1 : s.indexOf('}', open);
+            if (close < 0) return new Segment(s, null, null, null);
+            return new Segment(null, s.substring(0, open), s.substring(open + 1, close), s.substring(close + 1));
+        }
+        boolean accepts(String value) {
+            return value.length() > prefix.length() + suffix.length() && value.startsWith(prefix) && value.endsWith(suffix);
+        }
+        String capture(String value) {
+            return value.substring(prefix.length(), value.length() - suffix.length());
+        }
+    }
+
+    private static final class Node {
+        final Map<String, Node> literals = new HashMap<>();
+        final Map<List<String>, Node> params = new LinkedHashMap<>(); // ключ — префикс и суффикс
+        final Map<List<String>, Segment> paramSegments = new HashMap<>();
+        Template terminal;
+    }
+
+    private final Node root = new Node();
+    private final Map<String, Template> templates = new LinkedHashMap<>();
+
+    public PathRouter(Collection<String> paths) {
+        for (String p : paths) add(p, Set.of());
+    }
+
+    // Пути и методы раздела paths спецификации
+    public static PathRouter of(JsonNode spec) {
+        PathRouter r = new PathRouter(List.of());
+        Iterator<Map.Entry<String, JsonNode>> it = spec.path("paths").fields();
+        while (it.hasNext()) {
+            Map.Entry<String, JsonNode> e = it.next();
+            Set<String> methods = new LinkedHashSet<>();
+            for (String m : OpenApiLoader.METHODS) if (e.getValue().has(m)) methods.add(m.toUpperCase(Locale.ROOT));
+            r.add(e.getKey(), Collections.unmodifiableSet(methods));
+        }
+        return r;
+    }
+
+    private void add(String path, Set<String> methods) {
+        List<String> raw = split(path);
+        Segment[] segs = new Segment[raw.size()];
+        Node n = root;
+        for (int i = 0; i < segs.length; i++) {
+            Segment s = segs[i] = Segment.parse(raw.get(i));
+            if (s.param == null) {
+                n = n.literals.computeIfAbsent(s.literal, k -> new Node());
+            } else {
+                List<String> key = List.of(s.prefix, s.suffix);
+                n.paramSegments.putIfAbsent(key, s);
+                n = n.params.computeIfAbsent(key, k -> new Node());
+            }
+        }
+        Template t = new Template(path, segs, methods);
+        if (n.terminal == null) n.terminal = t;
+        templates.putIfAbsent(path, t);
+    }
+
+    public Collection<Template> templates() { return Collections.unmodifiableCollection(templates.values()); }
+
+    public Template template(String path) { return templates.get(path); }
+
+    // Шаблон для конкретного пути (query и фрагмент отбрасываются) или null
+    public Match match(String path) {
+        List<String> segs = split(stripQuery(path));
+        String[] captured = new String[segs.size()];
+        Template t = descend(root, segs, 0, captured);
+        if (t == null) return null;
+        if (!t.templated()) return new Match(t, Map.of());
+        Map<String, String> params = new LinkedHashMap<>();
+        for (int i = 0; i < t.segments.length; i++) {
+            if (t.segments[i].param != null) params.put(t.segments[i].param, captured[i]);
+        }
+        return new Match(t, params);
+    }
+
+    private static Template descend(Node n, List<String> segs, int i, String[] captured) {
+        if (i == segs.size()) return n.terminal;
+        String s = segs.get(i);
+        Node lit = n.literals.get(s);
+        if (lit != null) {
+            Template t = descend(lit, segs, i + 1, captured);
+            if (t != null) return t;
+        }
+        for (Map.Entry<List<String>, Node> e : n.params.entrySet()) {
+            Segment seg = n.paramSegments.get(e.getKey());
+            if (!seg.accepts(s)) continue;
+            Template t = descend(e.getValue(), segs, i + 1, captured);
+            if (t != null) {
+                captured[i] = seg.capture(s);
+                return t;
+            }
+        }
+        return null;
+    }
+
+    private static String stripQuery(String path) {
+        int q = path.indexOf('?');
+        int h = path.indexOf('#');
+        int end = q < 0 ? h : h < 0 ? q : Math.min(q, h);
+        return end < 0 ? path : path.substring(0, end);
+    }
+
+    // Сегменты пути; ведущий и завершающий "/" не важны, "/" — ноль сегментов
+    private static List<String> split(String path) {
+        List<String> out = new ArrayList<>();
+        int start = 0, len = path.length();
+        while (start < len) {
+            int slash = path.indexOf('/', start);
+            int end = slash < 0 ? len : slash;
+            if (end > start) out.add(path.substring(start, end));
+            start = end + 1;
+        }
+        return out;
+    }
+}
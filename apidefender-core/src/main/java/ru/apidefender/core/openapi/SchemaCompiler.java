@@ -0,0 +1,157 @@
+package ru.apidefender.core.openapi;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+// Компилятор схем ответов спецификации в CompiledSchema. Схема компилируется один раз на
+// (операция, код ответа, media type); $ref из components — один раз на спецификацию, так что общие
+// модели разделяются всеми операциями. Циклические $ref замыкаются на ещё заполняемый узел,
+// allOf сливается в один узел (properties, required, additionalProperties, items). Слитые схемы поля
+// запоминаются по набору исходных узлов, так что рекурсия через allOf замыкается так же, как через $ref.
+// Живёт в LoadedSpec: общий для проверки контракта, сканеров и заданий scan-batch/serve на той же спецификации
+public class SchemaCompiler {
+    private final JsonNode root;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<String, CompiledSchema> byRef = new HashMap<>(); // под lock
+    private final Map<Parts, CompiledSchema> merged = new HashMap<>(); // под lock
+    private final Map<String, Optional<CompiledSchema>> responses = new ConcurrentHashMap<>();
+
+    public SchemaCompiler(JsonNode root) {
+        this.root = root;
+    }
+
+    // Схема ответа; null — для этого кода и media type схема не описана
+    public CompiledSchema response(String method, String path, String status, String mediaType) {
+        String m = method.toLowerCase(Locale.ROOT);
+        return compiled(m + " " + path + " " + status + " " + mediaType, () -> root.path("paths").path(path).path(m)
+                .path("responses").path(status).path("content").path(mediaType).path("schema"));
+    }
+
+    // Схема по ключу кэша; узел ищется только при первом обращении. null — схема не описана
+    CompiledSchema compiled(String key, Supplier<JsonNode> schema) {
+        Optional<CompiledSchema> c = responses.get(key);
+        if (c != null) return c.orElse(null);
+        lock.lock();
+        try {
+            c = responses.get(key);
+            if (c == null) {
+                JsonNode node = schema.get();
+                c = Optional.ofNullable(node == null || node.isMissingNode() ? null : compile(node));
+                responses.put(key, c);
+            }
+            return c.orElse(null);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private CompiledSchema compile(JsonNode schema) {
+        if (schema == null || !schema.isObject()) return CompiledSchema.ANY;
+        String ref = refOf(schema);
+        if (ref == null) {
+            CompiledSchema c = new CompiledSchema();
+            fill(c, schema);
+            return c;
+        }
+        // уже известный узел, в том числе ещё заполняемый — так замыкаются циклы
+        CompiledSchema known = byRef.get(ref);
+        if (known != null) return known;
+        JsonNode target = resolve(ref);
+        if (target == null) return CompiledSchema.ANY;
+        CompiledSchema shell = new CompiledSchema();
+        byRef.put(ref, shell);
+        fill(shell, target);
+        return shell;
+    }
+
+    private void fill(CompiledSchema c, JsonNode schema) {
+        List<JsonNode> parts = new ArrayList<>();
+        flatten(schema, parts, new HashSet<>());
+        Map<String, List<JsonNode>> props = new LinkedHashMap<>();
+        Set<String> required = new LinkedHashSet<>();
+        List<JsonNode> items = new ArrayList<>();
+        List<CompiledSchema.Choice> choices = new ArrayList<>();
+        for (JsonNode p : parts) {
+            if (c.type == null) c.type = p.path("type").asText(null);
+            JsonNode pp = p.path("properties");
+            if (pp.isObject()) {
+                pp.fields().forEachRemaining(e -> props.computeIfAbsent(e.getKey(), k -> new ArrayList<>()).add(e.getValue()));
+                if (!p.path("additionalProperties").asBoolean(true)) c.closed = true;
+            }
+            if (p.path("required").isArray()) p.get("required").forEach(r -> required.add(r.asText()));
+            if (p.has("items")) items.add(p.get("items"));
+            for (String kw : List.of("oneOf", "anyOf")) {
+                JsonNode branches = p.path(kw);
+                if (!branches.isArray()) continue;
+                List<CompiledSchema> compiled = new ArrayList<>();
+                for (JsonNode b : branches) compiled.add(compile(b));
+                choices.add(new CompiledSchema.Choice(kw, compiled.toArray(new CompiledSchema[0])));
+            }
+        }
+        Map<String, CompiledSchema> properties = new LinkedHashMap<>();
+        props.forEach((name, schemas) -> properties.put(name, compileAll(schemas)));
+        c.properties = Collections.unmodifiableMap(properties);
+        c.required = List.copyOf(required);
+        c.items = items.isEmpty() ? null : compileAll(items);
+        c.choices = List.copyOf(choices);
+    }
+
+    // Узлы спецификации, слитые в одну схему; сравниваются по идентичности, не по содержимому
+    private record Parts(List<JsonNode> nodes) {
+        @Override public boolean equals(Object o) {
+            if (!(o instanceof Parts p) || p.nodes.size() != nodes.size()) return false;
+            for (int i = 0; i < nodes.size(); i++) if (nodes.get(i) != p.nodes.get(i)) return false;
+            return true;
+        }
+        @Override public int hashCode() {
+            int h = 1;
+            for (JsonNode n : nodes) h = 31 * h + System.identityHashCode(n);
+            return h;
+        }
+    }
+
+    // Несколько схем одного поля (из разных ветвей allOf) — как allOf из них. Узел регистрируется
+    // до заполнения: повторная встреча того же набора (рекурсивная модель) вернёт его же
+    private CompiledSchema compileAll(List<JsonNode> schemas) {
+        if (schemas.size() == 1) return compile(schemas.get(0));
+        Parts key = new Parts(List.copyOf(schemas));
+        CompiledSchema known = merged.get(key);
+        if (known != null) return known;
+        CompiledSchema shell = new CompiledSchema();
+        merged.put(key, shell);
+        ObjectNode allOf = JsonNodeFactory.instance.objectNode();
+        allOf.putArray("allOf").addAll(schemas);
+        fill(shell, allOf);
+        return shell;
+    }
+
+    // Схема и все её ветви allOf (с раскрытыми $ref) списком; повторная ссылка не раскрывается
+    private void flatten(JsonNode schema, List<JsonNode> out, Set<String> refs) {
+        if (schema == null || !schema.isObject()) return;
+        String ref = refOf(schema);
+        if (ref != null) {
+            if (refs.add(ref)) flatten(resolve(ref), out, refs);
+            return;
+        }
+        out.add(schema);
+        JsonNode allOf = schema.path("allOf");
+        if (allOf.isArray()) for (JsonNode b : allOf) flatten(b, out, refs);
+    }
+
+    private static String refOf(JsonNode schema) {
+        JsonNode ref = schema.get("$ref");
+        return ref != null && ref.isTextual() ? ref.asText() : null;
+    }
+
+    private JsonNode resolve(String ref) {
+        if (!ref.startsWith("#/")) return null;
+        JsonNode n = root.at(ref.substring(1));
+        return n.isMissingNode() ? null : n;
+    }
+}
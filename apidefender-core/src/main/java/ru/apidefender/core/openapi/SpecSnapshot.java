@@ -0,0 +1,97 @@
+package ru.apidefender.core.openapi;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.stream.Stream;
+
+// Двоичный снимок разобранной спецификации (Smile): дерево с уже перенесёнными внешними $ref,
+// хэши операций и число строк исходника. Файл снимка назван по sha-256 корневого файла спецификации,
+// внутри — sha-256 каждого внешнего файла: снимок годен, только пока совпадают все входы.
+// Повторный запуск на той же спецификации не разбирает YAML и не считает хэши операций заново
+final class SpecSnapshot {
+    private static final int FORMAT = 1;
+    private static final int KEEP = 8; // сколько последних снимков хранить в каталоге
+    private static final ObjectMapper SMILE = new ObjectMapper(new SmileFactory());
+
+    private SpecSnapshot() {}
+
+    // Снимок для спецификации с данным хэшем; null — снимка нет, он устарел или не читается
+    static OpenApiLoader.LoadedSpec read(Path dir, Path file, String sha256) {
+        Path snap = dir.resolve(sha256 + ".smile");
+        if (!Files.isRegularFile(snap)) return null;
+        try {
+            JsonNode n = SMILE.readTree(Files.readAllBytes(snap));
+            if (n.path("format").asInt() != FORMAT) return null;
+            // внешние ссылки относительны: тот же файл в другом каталоге может ссылаться на другие файлы
+            if (n.path("inputs").size() > 0 && !file.toString().equals(n.path("source").asText())) return null;
+            List<Path> inputs = new ArrayList<>();
+            List<String> external = new ArrayList<>();
+            inputs.add(file);
+            for (JsonNode in : n.path("inputs")) {
+                Path p = Path.of(in.path("path").asText());
+                String h = in.path("sha256").asText();
+                if (!Files.isRegularFile(p) || !OpenApiLoader.sha256(Files.readAllBytes(p)).equals(h)) return null;
+                inputs.add(p);
+                external.add(h);
+            }
+            try { Files.setLastModifiedTime(snap, FileTime.fromMillis(System.currentTimeMillis())); } catch (Exception ignored) {}
+            Map<String, String> hashes = new LinkedHashMap<>();
+            n.path("operationHashes").fields().forEachRemaining(e -> hashes.put(e.getKey(), e.getValue().asText()));
+            return new OpenApiLoader.LoadedSpec(n.get("root"), n.path("version").asText(), n.path("server").asText(null),
+                    hashes, sha256, OpenApiLoader.contentHash(sha256, external), n.path("lines").asLong(), inputs);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    // Запись через временный файл и атомарную замену: параллельные сканы не увидят недописанный снимок.
+    // Ошибки записи не мешают скану — снимок только ускоряет следующий запуск
+    static void write(Path dir, OpenApiLoader.LoadedSpec spec, Map<Path, String> external) {
+        try {
+            Files.createDirectories(dir);
+            ObjectNode n = JsonNodeFactory.instance.objectNode();
+            n.put("format", FORMAT);
+            n.put("source", spec.inputs.get(0).toString());
+            for (Map.Entry<Path, String> e : external.entrySet()) {
+                n.withArray("inputs").addObject().put("path", e.getKey().toString()).put("sha256", e.getValue());
+            }
+            n.put("version", spec.version);
+            n.put("server", spec.firstServerUrl);
+            n.put("lines", spec.lines);
+            ObjectNode hashes = n.putObject("operationHashes");
+            spec.operationHashes.forEach(hashes::put);
+            n.set("root", spec.root);
+            Path tmp = Files.createTempFile(dir, spec.sha256, ".tmp");
+            try {
+                SMILE.writeValue(tmp.toFile(), n);
+                Files.move(tmp, dir.resolve(spec.sha256 + ".smile"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+            prune(dir);
+        } catch (Exception ignored) {}
+    }
+
+    // Старые снимки (прежние версии спецификаций) удаляются, остаются KEEP последних
+    private static void prune(Path dir) throws IOException {
+        List<Path> snaps;
+        try (Stream<Path> s = Files.list(dir)) {
+            snaps = new ArrayList<>(s.filter(p -> p.getFileName().toString().endsWith(".smile")).toList());
+        }
+        if (snaps.size() <= KEEP) return;
+        snaps.sort(Comparator.comparing((Path p) -> p.toFile().lastModified()).reversed());
+        for (Path p : snaps.subList(KEEP, snaps.size())) {
+            try { Files.deleteIfExists(p); } catch (Exception ignored) {}
+        }
+    }
+}
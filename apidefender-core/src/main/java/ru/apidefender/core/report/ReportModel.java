@@ -4,6 +4,7 @@ import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
 
 @JsonInclude(JsonInclude.Include.NON_NULL)
 public class ReportModel {
@@ -16,6 +17,7 @@ public class ReportModel {
         public String openapiVersion;
         public int endpointsScanned;
         public String tracesDir;
+        public String shard; // "i/N" для частичного отчёта (--shard)
     }
     public static class ContractMismatch {
         public String endpoint;
@@ -51,6 +53,69 @@ public class ReportModel {
         public Map<String,Integer> scannerAttempts = new HashMap<>();
         public Map<String,Long> scannerDurMs = new HashMap<>();
         public Map<String,Object> presetParams = new HashMap<>();
+        public String httpProtocol;
+        public int connectionsUsed;
+        public Map<String,Integer> connectionsByProtocol = new HashMap<>();
+        public double streamsPerConnectionAvg;
+        public int streamsPerConnectionMax;
+        public int peakConcurrentStreams;
+        public long throttledMs;
+        public int rateLimitBackoffs;
+        public Map<String,Double> rateLimitRps = new HashMap<>();
+        public long responseCacheHits;
+        public long responseCacheCoalesced;
+        public long responseCacheMisses;
+        public Map<String,PhaseTimings> timingsByScanner = new HashMap<>();
+        public Map<String,PhaseTimings> timingsByEndpoint = new HashMap<>();
+        public Map<String,Long> probeUnits = new HashMap<>();
+        // хранение трейсов: бюджет и занятый объём (байт до сжатия), исходы по категориям
+        public long traceBudgetBytes;
+        public long traceBytes;
+        public boolean traceBudgetExhausted;
+        public Map<String,Long> tracesFull = new HashMap<>();
+        public Map<String,Long> tracesExcerpt = new HashMap<>();
+        public Map<String,Long> tracesSampledOut = new HashMap<>();
+        public Map<String,Long> tracesOverBudget = new HashMap<>();
+        public long tracesDropped; // не записаны: очередь записи переполнена или ошибка диска
+    }
+    // Средние длительности фаз сетевого вызова, мс
+    public static class PhaseTimings {
+        public long calls;
+        public long failed;
+        public long reusedConnections;
+        public double dnsMs;
+        public double connectMs;
+        public double tlsMs;
+        public double requestWriteMs;
+        public double ttfbMs;
+        public double bodyReadMs;
+        public double totalMs;
+    }
+
+    // Какие единицы (сканер, операция) успели выполниться до срока скана
+    public static class Coverage {
+        public boolean complete = true;
+        public String stoppedBy; // "deadline" — скан остановлен по сроку, "cancelled" — отменён (serve)
+        public long unitsCompleted;
+        public long unitsInterrupted;
+        public long unitsSkipped;
+        public long unitsResumed; // взяты из журнала контрольных точек (--resume)
+        public List<String> missingShards = new ArrayList<>(); // merge: доли «i/N», которых не было среди частей
+        public List<CoverageUnit> units = new ArrayList<>();
+    }
+    public static class CoverageUnit {
+        public String scanner;
+        public String operation;
+        public long completed;
+        public long interrupted;
+        public long skipped;
+        public long resumed;
+    }
+
+    // Хэш операции OpenAPI и время её последней полной проверки — основа для --incremental
+    public static class OperationState {
+        public String hash;
+        public String verifiedAt;
     }
 
     public Meta meta = new Meta();
@@ -61,4 +126,53 @@ public class ReportModel {
     public Contract contract = new Contract();
     public List<SecurityIssue> security = new ArrayList<>();
     public Telemetry telemetry = new Telemetry();
+    public Coverage coverage = new Coverage();
+    public Map<String,OperationState> operations = new TreeMap<>(); // ключ — "GET /path"
+
+    // ReentrantLock вместо synchronized: не закрепляет виртуальный поток за несущим
+    private final ReentrantLock lock = new ReentrantLock();
+    private ScanJournal journal; // находки дублируются в журнал контрольных точек
+
+    public void attachJournal(ScanJournal j) { journal = j; }
+
+    public void addIssue(SecurityIssue si) {
+        lock.lock();
+        try { security.add(si); } finally { lock.unlock(); }
+        if (journal != null) journal.finding("security", si);
+    }
+
+    public void addMismatch(ContractMismatch cm) {
+        lock.lock();
+        try { contract.mismatches.add(cm); } finally { lock.unlock(); }
+        if (journal != null) journal.finding("mismatch", cm);
+    }
+
+    public void addUndocumented(Undocumented u) {
+        lock.lock();
+        try { contract.undocumented.add(u); } finally { lock.unlock(); }
+        if (journal != null) journal.finding("undocumented", u);
+    }
+
+    // Снимок числа находок для наблюдения за ходом скана: [уязвимости, несоответствия, недокументированные]
+    public int[] findingCounts() {
+        lock.lock();
+        try { return new int[]{security.size(), contract.mismatches.size(), contract.undocumented.size()}; }
+        finally { lock.unlock(); }
+    }
+
+    public void recordRequest(long latencyMs) {
+        lock.lock();
+        try {
+            telemetry.requestsTotal++;
+            telemetry.avgLatencyMs += latencyMs;
+        } finally { lock.unlock(); }
+    }
+
+    public void recordScanner(String category, long durMs) {
+        lock.lock();
+        try {
+            telemetry.scannerAttempts.merge(category, 1, Integer::sum);
+            telemetry.scannerDurMs.merge(category, durMs, Long::sum);
+        } finally { lock.unlock(); }
+    }
 }
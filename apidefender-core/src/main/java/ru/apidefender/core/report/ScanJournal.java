@@ -0,0 +1,161 @@
+package ru.apidefender.core.report;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Журнал контрольных точек: append-only JSONL в каталоге вывода. В него пишутся находки (с единицей,
+// в которой они получены) и завершённые единицы (сканер, операция, проба). При --resume журнал перечитывается:
+// находки завершённых единиц возвращаются в отчёт, сами единицы повторно не выполняются.
+// Находки незавершённых единиц отбрасываются — такие единицы выполнятся заново.
+public class ScanJournal implements AutoCloseable {
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Path file;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ThreadLocal<String> currentUnit = new ThreadLocal<>();
+    private final Set<String> doneUnits = ConcurrentHashMap.newKeySet();
+    private BufferedWriter out;
+    private int restoredUnits;
+    private int restoredFindings;
+    private boolean resumeRejected;
+
+    private ScanJournal(Path file) { this.file = file; }
+
+    // fingerprint — цель, пресет и хэш спецификации: журнал другого скана не подхватывается
+    public static ScanJournal open(Path file, String fingerprint, boolean resume, ReportModel report) throws IOException {
+        ScanJournal j = new ScanJournal(file);
+        if (file.getParent() != null) Files.createDirectories(file.getParent());
+        boolean append = false;
+        if (resume && Files.exists(file)) {
+            append = j.restore(fingerprint, report);
+            j.resumeRejected = !append;
+        }
+        if (append) {
+            j.out = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+            // последняя строка могла оборваться при аварийном завершении
+            if (!endsWithNewline(file)) j.out.newLine();
+        } else {
+            j.out = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            ObjectNode h = j.mapper.createObjectNode();
+            h.put("t", "scan");
+            h.put("fingerprint", fingerprint);
+            j.append(h);
+        }
+        report.attachJournal(j);
+        return j;
+    }
+
+    public static String unitKey(String scanner, String operation, long probe) {
+        return scanner + "\n" + operation + "\n" + probe;
+    }
+
+    public boolean isDone(String unit) { return doneUnits.contains(unit); }
+
+    // Находки, добавленные в отчёт на этом потоке, относятся к единице unit
+    public void enter(String unit) { currentUnit.set(unit); }
+    public void leave() { currentUnit.remove(); }
+
+    public void unitDone(String unit) {
+        doneUnits.add(unit);
+        ObjectNode n = mapper.createObjectNode();
+        n.put("t", "unit");
+        n.put("unit", unit);
+        append(n);
+    }
+
+    void finding(String kind, Object data) {
+        ObjectNode n = mapper.createObjectNode();
+        n.put("t", "finding");
+        n.put("unit", currentUnit.get());
+        n.put("kind", kind);
+        n.set("data", mapper.valueToTree(data));
+        append(n);
+    }
+
+    public int restoredUnits() { return restoredUnits; }
+    public int restoredFindings() { return restoredFindings; }
+    public boolean resumeRejected() { return resumeRejected; }
+
+    private boolean restore(String fingerprint, ReportModel report) throws IOException {
+        List<JsonNode> findings = new ArrayList<>();
+        Set<String> done = new HashSet<>();
+        boolean header = false;
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            JsonNode n;
+            try { n = mapper.readTree(line); } catch (Exception e) { continue; } // оборванная запись
+            if (n == null) continue;
+            switch (n.path("t").asText()) {
+                case "scan" -> {
+                    if (!fingerprint.equals(n.path("fingerprint").asText())) return false;
+                    header = true;
+                }
+                case "unit" -> done.add(n.path("unit").asText());
+                case "finding" -> findings.add(n);
+                default -> { }
+            }
+        }
+        if (!header) return false;
+        for (JsonNode f : findings) {
+            if (!done.contains(f.path("unit").asText(null))) continue;
+            try {
+                JsonNode data = f.path("data");
+                switch (f.path("kind").asText()) {
+                    case "security" -> report.security.add(mapper.treeToValue(data, ReportModel.SecurityIssue.class));
+                    case "mismatch" -> report.contract.mismatches.add(mapper.treeToValue(data, ReportModel.ContractMismatch.class));
+                    case "undocumented" -> report.contract.undocumented.add(mapper.treeToValue(data, ReportModel.Undocumented.class));
+                    default -> { continue; }
+                }
+                restoredFindings++;
+            } catch (Exception ignored) {}
+        }
+        doneUnits.addAll(done);
+        restoredUnits = done.size();
+        return true;
+    }
+
+    // Запись сразу сбрасывается в файл: после падения процесса журнал остаётся целым до последней строки
+    private void append(ObjectNode n) {
+        lock.lock();
+        try {
+            if (out == null) return;
+            out.write(mapper.writeValueAsString(n));
+            out.newLine();
+            out.flush();
+        } catch (IOException ignored) {
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static boolean endsWithNewline(Path file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "r")) {
+            if (raf.length() == 0) return true;
+            raf.seek(raf.length() - 1);
+            return raf.read() == '\n';
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (out != null) out.close();
+        } catch (IOException ignored) {
+        } finally {
+            out = null;
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package ru.apidefender.core.report;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Политика хранения трейсов скана: доля сохраняемых трейсов по категориям, общий бюджет байт
+// и режим «полные тела только у находок» — остальным трейсам достаются начало и конец тел.
+// Бюджет считается по объёму трейса до сжатия и дедупликации, поэтому на диске трейсы занимают
+// не больше него. Деградация ступенчатая: контракт и discovery занимают бюджет только до
+// RESERVED_FOR_FINDINGS от конца, дальше — выдержки вместо полных тел, при исчерпании трейс
+// не сохраняется вовсе. Что и сколько раз урезано, попадает в ReportModel.Telemetry
+public final class TracePolicy {
+    public static final String CONTRACT = "contract";
+    public static final String UNDOCUMENTED = "undocumented";
+    public static final String FINDING = "finding";
+    private static final double RESERVED_FOR_FINDINGS = 0.2;
+
+    public enum Decision { FULL, EXCERPT, SKIP }
+
+    private final long budgetBytes; // 0 — без ограничения
+    private final Map<String, Double> sampling;
+    private final boolean findingsOnlyBodies;
+    private final int excerptBytes;
+    private final AtomicLong used = new AtomicLong();
+    private final Map<String, AtomicLong> seen = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> full = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> excerpt = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> sampledOut = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> overBudget = new ConcurrentHashMap<>();
+    private volatile boolean exhausted;
+
+    public TracePolicy(long budgetBytes, Map<String, Double> sampling, boolean findingsOnlyBodies, int excerptBytes) {
+        this.budgetBytes = Math.max(0, budgetBytes);
+        this.sampling = sampling != null ? Map.copyOf(sampling) : Map.of();
+        this.findingsOnlyBodies = findingsOnlyBodies;
+        this.excerptBytes = Math.max(0, excerptBytes);
+    }
+
+    // Попадает ли очередной трейс категории в выборку: при доле 0.1 — первый и каждый десятый следом.
+    // Счётчик, а не случайность: повторный скан той же цели сохраняет те же трейсы
+    public boolean sampled(String category) {
+        double rate = sampling.getOrDefault(category, 1.0);
+        if (rate >= 1.0) return true;
+        if (rate > 0) {
+            long every = Math.max(1, Math.round(1.0 / rate));
+            if ((seen.computeIfAbsent(category, k -> new AtomicLong()).getAndIncrement()) % every == 0) return true;
+        }
+        count(sampledOut, category);
+        return false;
+    }
+
+    // Решение по трейсу, уже прошедшему выборку: объём полного трейса и трейса с выдержками тел.
+    // Одобренный объём сразу списывается с бюджета
+    public Decision admit(String category, long fullBytes, long excerptBytes) {
+        boolean wantFull = !findingsOnlyBodies || FINDING.equals(category);
+        long limit = budgetBytes == 0 ? Long.MAX_VALUE
+                : FINDING.equals(category) ? budgetBytes : (long) (budgetBytes * (1 - RESERVED_FOR_FINDINGS));
+        if (wantFull && reserve(fullBytes, limit)) {
+            count(full, category);
+            return Decision.FULL;
+        }
+        if (reserve(excerptBytes, limit)) {
+            count(excerpt, category);
+            return Decision.EXCERPT;
+        }
+        exhausted = true;
+        count(overBudget, category);
+        return Decision.SKIP;
+    }
+
+    // Начало и конец тела по excerptBytes байт; короткое тело возвращается как есть
+    public String excerpt(String body) {
+        if (body == null) return null;
+        byte[] b = body.getBytes(StandardCharsets.UTF_8);
+        if (b.length <= 2L * excerptBytes) return body;
+        // границы сдвигаются на начало символа UTF-8, чтобы не разрезать кириллицу
+        int headEnd = excerptBytes, tailStart = b.length - excerptBytes;
+        while (headEnd > 0 && (b[headEnd] & 0xC0) == 0x80) headEnd--;
+        while (tailStart < b.length && (b[tailStart] & 0xC0) == 0x80) tailStart++;
+        String head = new String(b, 0, headEnd, StandardCharsets.UTF_8);
+        String tail = new String(b, tailStart, b.length - tailStart, StandardCharsets.UTF_8);
+        return head + "\n… [опущено " + (tailStart - headEnd) + " байт] …\n" + tail;
+    }
+
+    // Объём тела после excerpt() (с пометкой о пропуске), не считая само тело
+    public long excerptLength(long bodyBytes) {
+        return bodyBytes <= 2L * excerptBytes ? bodyBytes : 2L * excerptBytes + 48;
+    }
+
+    private boolean reserve(long bytes, long limit) {
+        long cur;
+        do {
+            cur = used.get();
+            if (cur + bytes > limit) return false;
+        } while (!used.compareAndSet(cur, cur + bytes));
+        return true;
+    }
+
+    private static void count(Map<String, LongAdder> m, String category) {
+        m.computeIfAbsent(category, k -> new LongAdder()).increment();
+    }
+
+    private static Map<String, Long> snapshot(Map<String, LongAdder> m) {
+        Map<String, Long> r = new HashMap<>();
+        m.forEach((k, v) -> r.put(k, v.sum()));
+        return r;
+    }
+
+    public void writeTo(ReportModel.Telemetry t) {
+        t.traceBudgetBytes = budgetBytes;
+        t.traceBytes = used.get();
+        t.traceBudgetExhausted = exhausted;
+        t.tracesFull = snapshot(full);
+        t.tracesExcerpt = snapshot(excerpt);
+        t.tracesSampledOut = snapshot(sampledOut);
+        t.tracesOverBudget = snapshot(overBudget);
+    }
+}
@@ -0,0 +1,109 @@
+package ru.apidefender.core.report;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+// Чтение трейсов каталога: индексы всех запусков (*.idx) загружаются один раз, запись читается
+// из сегмента по смещению. Поля *Blob записи заменяются распакованным содержимым блобов — read()
+// возвращает трейс в том же виде, что и без дедупликации. Трейсы старого формата (отдельный JSON-файл
+// на трейс) читаются по имени файла
+public class TraceReader {
+    private record Entry(String segment, long offset, int length) {}
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Path dir;
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final Map<String, Entry> blobs = new HashMap<>(); // sha-256 -> сжатое содержимое
+
+    private TraceReader(Path dir) { this.dir = dir; }
+
+    public static TraceReader open(Path dir) {
+        TraceReader r = new TraceReader(dir);
+        if (dir == null || !Files.isDirectory(dir)) return r;
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, "*" + TraceStore.INDEX_SUFFIX)) {
+            for (Path idx : ds) {
+                // последняя строка могла оборваться при аварийном завершении
+                for (String line : Files.readAllLines(idx, StandardCharsets.UTF_8)) {
+                    String[] f = line.split("\t");
+                    if (f.length != 4) continue;
+                    try {
+                        Entry e = new Entry(f[1], Long.parseLong(f[2]), Integer.parseInt(f[3]));
+                        if (f[0].startsWith("=")) r.blobs.putIfAbsent(f[0].substring(1), e);
+                        else r.entries.put(f[0], e);
+                    } catch (NumberFormatException ignored) {}
+                }
+            }
+        } catch (Exception ignored) {}
+        return r;
+    }
+
+    // Трейс по ссылке из отчёта; null — трейса нет
+    public JsonNode read(String traceRef) {
+        if (traceRef == null || dir == null) return null;
+        try {
+            Entry e = entries.get(traceRef);
+            if (e != null) {
+                JsonNode n = mapper.readTree(frame(e));
+                if (n instanceof ObjectNode o) {
+                    for (String name : List.of("requestHeaders", "requestBody", "responseHeaders", "responseBody")) {
+                        JsonNode hash = o.remove(name + "Blob");
+                        if (hash == null) continue;
+                        Entry b = blobs.get(hash.asText());
+                        if (b == null) continue;
+                        byte[] raw = inflate(frame(b));
+                        if (name.endsWith("Headers")) o.set(name, mapper.readTree(raw));
+                        else o.put(name, new String(raw, StandardCharsets.UTF_8));
+                    }
+                }
+                return n;
+            }
+            Path file = dir.resolve(traceRef).normalize();
+            if (file.startsWith(dir) && Files.isRegularFile(file)) return mapper.readTree(file.toFile());
+        } catch (Exception ignored) {}
+        return null;
+    }
+
+    private byte[] frame(Entry e) throws IOException {
+        try (FileChannel ch = FileChannel.open(dir.resolve(e.segment), StandardOpenOption.READ)) {
+            ByteBuffer b = ByteBuffer.allocate(e.length);
+            long pos = e.offset + 4;
+            while (b.hasRemaining() && ch.read(b, pos + b.position()) > 0) {}
+            return b.array();
+        }
+    }
+
+    private static byte[] inflate(byte[] packed) throws IOException {
+        Inflater inf = new Inflater();
+        try {
+            inf.setInput(packed);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(packed.length * 4);
+            byte[] buf = new byte[64 * 1024];
+            while (!inf.finished()) {
+                int n = inf.inflate(buf);
+                if (n == 0 && (inf.needsInput() || inf.needsDictionary())) throw new IOException("блоб трейса обрезан");
+                out.write(buf, 0, n);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IOException(e);
+        } finally {
+            inf.end();
+        }
+    }
+}
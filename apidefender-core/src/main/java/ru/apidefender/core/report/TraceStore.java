@@ -0,0 +1,279 @@
+package ru.apidefender.core.report;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+
+// Хранилище трейсов скана: записи добавляются в сегменты <run>-NNNNNN.seg (длина int32 + JSON записи),
+// сегмент сменяется по достижении segmentBytes. Индекс <run>.idx — строка «traceRef сегмент смещение длина»
+// на каждую запись. Тела и блоки заголовков от BLOB_MIN байт хранятся отдельно по sha-256 содержимого,
+// сжатыми deflate, один раз на запуск: запись трейса ссылается на них полями *Blob, в индексе блоб —
+// строка «=sha256 сегмент смещение длина». Одинаковые страницы 404 и конверты ошибок занимают место один раз.
+// Пишет один фоновый поток из ограниченной очереди: save() только ставит трейс в очередь и сразу
+// возвращает traceRef, потоки сканеров файловую систему не ждут. Очередь полна или хранилище закрыто —
+// трейс отбрасывается, учитывается в dropped(), а save() возвращает null, как при SKIP политики. Имена файлов содержат идентификатор запуска, поэтому хранилища нескольких
+// сканов (шарды, scan-batch, повторные запуски) уживаются в одном каталоге. Читает TraceReader
+public class TraceStore implements AutoCloseable {
+    public static final String SEGMENT_SUFFIX = ".seg";
+    public static final String INDEX_SUFFIX = ".idx";
+    private static final long DEFAULT_SEGMENT_BYTES = 64L * 1024 * 1024;
+    private static final int DEFAULT_QUEUE = 8192;
+    private static final int WRITE_BUFFER = 1024 * 1024;
+    private static final int BLOB_MIN = 128; // короче — хранится в записи: ссылка почти такой же длины
+
+    // Трейс запроса: формат записи тот же, что у прежних JSON-файлов трейсов
+    public static final class Trace {
+        public String url;
+        public String method;
+        public String operation; // "GET /users/{id}", если метод описан
+        public String pathTemplate;
+        public Map<String, String> requestHeaders = Map.of();
+        public String requestBody;
+        public int status;
+        public Map<String, String> responseHeaders = Map.of();
+        public String responseBody;
+        public boolean excerpt; // тела урезаны политикой хранения до начала и конца
+    }
+
+    private record Pending(String ref, Trace trace) {}
+    private static final Pending STOP = new Pending(null, null);
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Path dir;
+    private final String run;
+    private final long segmentBytes;
+    private final BlockingQueue<Pending> queue;
+    private final AtomicLong seq = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong blobHits = new AtomicLong(); // тела и заголовки, уже сохранённые ранее
+    private final AtomicLong rawBytes = new AtomicLong(); // сколько заняли бы записи без блобов
+    private final AtomicLong storedBytes = new AtomicLong(); // фактически записано в сегменты
+    private final Thread writer;
+    private volatile IOException failure;
+    private volatile boolean closed;
+
+    // состояние ниже трогает только поток writer
+    private FileChannel segment;
+    private long segmentSize; // с учётом ещё не сброшенного буфера
+    private int segmentNo;
+    private final ByteBuffer out = ByteBuffer.allocateDirect(WRITE_BUFFER);
+    private final Set<String> blobs = new HashSet<>();
+    private final MessageDigest sha256;
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+    private final byte[] deflateBuf = new byte[64 * 1024];
+    private FileChannel index;
+    private final StringBuilder indexBuf = new StringBuilder();
+
+    public TraceStore(Path dir) throws IOException {
+        this(dir, DEFAULT_SEGMENT_BYTES, DEFAULT_QUEUE);
+    }
+
+    public TraceStore(Path dir, long segmentBytes, int queueSize) throws IOException {
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        Files.createDirectories(dir);
+        try {
+            this.sha256 = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        this.run = Long.toHexString(System.currentTimeMillis()) + Integer.toHexString(ThreadLocalRandom.current().nextInt(0x1000, 0x10000));
+        this.index = FileChannel.open(dir.resolve(run + INDEX_SUFFIX), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        this.writer = new Thread(this::drain, "trace-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    // Ставит трейс в очередь записи; не блокируется. Возвращает traceRef или null, если трейс отброшен:
+    // ссылка, которая никогда не разрешится, в отчёт не попадает
+    public String save(Trace t) {
+        String ref = run + "-t" + String.format("%06d", seq.incrementAndGet());
+        if (closed || !queue.offer(new Pending(ref, t))) {
+            dropped.incrementAndGet();
+            return null;
+        }
+        return ref;
+    }
+
+    public long dropped() { return dropped.get(); }
+    public long written() { return written.get(); }
+    public IOException failure() { return failure; }
+    public long blobHits() { return blobHits.get(); }
+    public long rawBytes() { return rawBytes.get(); }
+    public long storedBytes() { return storedBytes.get(); }
+
+    private void drain() {
+        List<Pending> batch = new ArrayList<>();
+        boolean stop = false;
+        while (!stop) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                break;
+            }
+            queue.drainTo(batch);
+            for (Pending p : batch) {
+                if (p == STOP) { stop = true; continue; }
+                if (failure != null) { dropped.incrementAndGet(); continue; }
+                try {
+                    append(p);
+                    written.incrementAndGet();
+                } catch (IOException e) {
+                    failure = e;
+                    dropped.incrementAndGet();
+                }
+            }
+            batch.clear();
+            try {
+                flushSegment();
+                flushIndex();
+            } catch (IOException e) {
+                if (failure == null) failure = e;
+            }
+        }
+    }
+
+    private void append(Pending p) throws IOException {
+        byte[] body = mapper.writeValueAsBytes(toJson(p.trace));
+        long offset = frame(body);
+        rawBytes.addAndGet(4 + body.length);
+        indexBuf.append(p.ref).append('\t').append(segmentName(segmentNo)).append('\t').append(offset).append('\t').append(body.length).append('\n');
+    }
+
+    // Кадр (длина + данные) в текущий сегмент; возвращает его смещение
+    private long frame(byte[] body) throws IOException {
+        if (segment == null || segmentSize + 4 + body.length > segmentBytes && segmentSize > 0) roll();
+        long offset = segmentSize;
+        if (out.remaining() < 4 + body.length) flushSegment();
+        if (out.remaining() >= 4 + body.length) {
+            out.putInt(body.length).put(body);
+        } else {
+            // запись крупнее буфера пишется напрямую
+            ByteBuffer frame = ByteBuffer.allocate(4 + body.length);
+            frame.putInt(body.length).put(body).flip();
+            while (frame.hasRemaining()) segment.write(frame);
+        }
+        segmentSize += 4 + body.length;
+        storedBytes.addAndGet(4 + body.length);
+        return offset;
+    }
+
+    // Блоб по хэшу содержимого: пишется сжатым при первой встрече, дальше — только ссылка
+    private String blob(byte[] raw) throws IOException {
+        String hash = HexFormat.of().formatHex(sha256.digest(raw));
+        if (!blobs.add(hash)) {
+            blobHits.incrementAndGet();
+            return hash;
+        }
+        deflater.reset();
+        deflater.setInput(raw);
+        deflater.finish();
+        ByteArrayOutputStream z = new ByteArrayOutputStream(Math.max(64, raw.length / 4));
+        while (!deflater.finished()) z.write(deflateBuf, 0, deflater.deflate(deflateBuf));
+        byte[] packed = z.toByteArray();
+        long offset = frame(packed);
+        indexBuf.append('=').append(hash).append('\t').append(segmentName(segmentNo)).append('\t').append(offset).append('\t').append(packed.length).append('\n');
+        return hash;
+    }
+
+    // Строка или блок заголовков: короткие — в записи, длинные — блобом в поле name + "Blob"
+    private void put(ObjectNode n, String name, String value) throws IOException {
+        if (value == null) return;
+        byte[] raw = value.getBytes(StandardCharsets.UTF_8);
+        if (raw.length < BLOB_MIN) { n.put(name, value); return; }
+        rawBytes.addAndGet(raw.length);
+        n.put(name + "Blob", blob(raw));
+    }
+
+    private void put(ObjectNode n, String name, Map<String, String> headers) throws IOException {
+        ObjectNode h = mapper.createObjectNode();
+        headers.forEach(h::put);
+        byte[] raw = mapper.writeValueAsBytes(h);
+        if (raw.length < BLOB_MIN) { n.set(name, h); return; }
+        rawBytes.addAndGet(raw.length);
+        n.put(name + "Blob", blob(raw));
+    }
+
+    private ObjectNode toJson(Trace t) throws IOException {
+        ObjectNode n = mapper.createObjectNode();
+        n.put("url", t.url);
+        n.put("method", t.method);
+        if (t.operation != null) n.put("operation", t.operation);
+        if (t.pathTemplate != null) n.put("pathTemplate", t.pathTemplate);
+        put(n, "requestHeaders", t.requestHeaders);
+        put(n, "requestBody", t.requestBody);
+        n.put("status", t.status);
+        put(n, "responseHeaders", t.responseHeaders);
+        put(n, "responseBody", t.responseBody);
+        if (t.excerpt) n.put("excerpt", true);
+        return n;
+    }
+
+    private void roll() throws IOException {
+        if (segment != null) {
+            flushSegment();
+            segment.close();
+        }
+        segmentNo++;
+        segmentSize = 0;
+        segment = FileChannel.open(dir.resolve(segmentName(segmentNo)), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    }
+
+    private String segmentName(int no) {
+        return run + "-" + String.format("%06d", no) + SEGMENT_SUFFIX;
+    }
+
+    private void flushSegment() throws IOException {
+        if (segment == null || out.position() == 0) return;
+        out.flip();
+        while (out.hasRemaining()) segment.write(out);
+        out.clear();
+    }
+
+    // Индекс дописывается после сегмента: ссылка из индекса всегда указывает на уже записанные байты
+    private void flushIndex() throws IOException {
+        if (indexBuf.length() == 0) return;
+        ByteBuffer b = ByteBuffer.wrap(indexBuf.toString().getBytes(StandardCharsets.UTF_8));
+        indexBuf.setLength(0);
+        while (b.hasRemaining()) index.write(b);
+    }
+
+    // Дописывает очередь и закрывает файлы; после close() трейсы не принимаются
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        try {
+            queue.put(STOP);
+            writer.join();
+            dropped.addAndGet(queue.size()); // поставленные в гонке с close()
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            if (segment != null) { segment.force(false); segment.close(); }
+            index.force(false);
+            index.close();
+        } catch (IOException e) {
+            if (failure == null) failure = e;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package ru.apidefender.core.log;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonlLoggerTest {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final int CAPACITY = 8192; // как в JsonlLogger
+
+    @TempDir
+    Path dir;
+    private PrintStream stdout;
+
+    // писатель дублирует журнал в stdout — в тестах он уходит в никуда
+    @BeforeEach
+    void muteStdout() {
+        stdout = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @AfterEach
+    void restoreStdout() {
+        System.setOut(stdout);
+    }
+
+    @Test
+    void concurrentProducersLoseAndDuplicateNothing() throws Exception {
+        Path file = dir.resolve("scan.log");
+        int producers = 8, perProducer = 5000;
+        JsonlLogger log = new JsonlLogger(false, file);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int id = p;
+            Thread t = new Thread(() -> {
+                try { start.await(); } catch (InterruptedException e) { return; }
+                for (int i = 0; i < perProducer; i++) log.info(id + "-" + i);
+            });
+            t.start();
+            threads.add(t);
+        }
+        start.countDown();
+        for (Thread t : threads) t.join();
+        log.close();
+
+        List<JsonNode> lines = read(file);
+        assertEquals(producers * perProducer, lines.size());
+        Set<String> seen = new HashSet<>();
+        for (JsonNode n : lines) assertTrue(seen.add(n.get("msg").asText()), "повтор: " + n);
+        for (int p = 0; p < producers; p++) {
+            for (int i = 0; i < perProducer; i++) assertTrue(seen.contains(p + "-" + i));
+        }
+    }
+
+    @Test
+    void closeFlushesBufferedLines() throws Exception {
+        Path file = dir.resolve("scan.log");
+        JsonlLogger log = new JsonlLogger(true, file);
+        for (int i = 0; i < 3000; i++) {
+            if (i % 2 == 0) log.info("m" + i);
+            else log.debug("m" + i);
+        }
+        log.close();
+        List<JsonNode> lines = read(file);
+        assertEquals(3000, lines.size());
+        for (int i = 0; i < 3000; i++) assertEquals("m" + i, lines.get(i).get("msg").asText());
+        // после close() сообщение пишется сразу, без писателя
+        log.info("после закрытия");
+        assertEquals("после закрытия", read(file).get(3000).get("msg").asText());
+    }
+
+    @Test
+    void overflowDropsDebugButKeepsInfo() throws Exception {
+        Path file = dir.resolve("scan.log");
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        // stdout, на котором писатель застревает, пока тест не отпустит: буфер логгера переполняется
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override public void write(int b) { gate(); }
+            @Override public void write(byte[] b, int off, int len) { gate(); }
+            private void gate() {
+                blocked.countDown();
+                try { release.await(); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+            }
+        }));
+        JsonlLogger log = new JsonlLogger(true, file);
+        log.info("first");
+        assertTrue(blocked.await(10, TimeUnit.SECONDS), "писатель не дошёл до вывода");
+
+        for (int i = 0; i < CAPACITY + 100; i++) log.debug("d" + i);
+        Thread unblock = new Thread(() -> {
+            try { Thread.sleep(200); } catch (InterruptedException ignored) {}
+            release.countDown();
+        });
+        unblock.start();
+        for (int i = 0; i < 10; i++) log.info("i" + i); // ждут места в буфере, а не отбрасываются
+        log.close();
+        unblock.join();
+
+        List<JsonNode> lines = read(file);
+        List<String> info = new ArrayList<>();
+        int debug = 0;
+        boolean droppedReported = false;
+        for (JsonNode n : lines) {
+            String level = n.get("level").asText(), msg = n.get("msg").asText();
+            if ("debug".equals(level)) debug++;
+            else if (msg.startsWith("Журнал переполнен")) droppedReported = msg.endsWith(": 100");
+            else info.add(msg);
+        }
+        assertEquals(CAPACITY, debug);
+        assertTrue(droppedReported, "нет записи о 100 пропущенных debug");
+        List<String> expected = new ArrayList<>(List.of("first"));
+        for (int i = 0; i < 10; i++) expected.add("i" + i);
+        assertEquals(expected, info);
+    }
+
+    private static List<JsonNode> read(Path file) throws Exception {
+        List<JsonNode> r = new ArrayList<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) r.add(MAPPER.readTree(line));
+        return r;
+    }
+}
@@ -0,0 +1,48 @@
+package ru.apidefender.core.openapi;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SchemaCompilerTest {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    // Модель-дерево через allOf: обе ветви объявляют одно рекурсивное поле
+    private static final String SPEC = """
+            {"openapi":"3.0.3","paths":{"/nodes":{"get":{"responses":{"200":{"content":{"application/json":
+              {"schema":{"$ref":"#/components/schemas/Node"}}}}}}}},
+             "components":{"schemas":{
+               "Base":{"type":"object","properties":{"child":{"$ref":"#/components/schemas/Node"}}},
+               "Node":{"allOf":[{"$ref":"#/components/schemas/Base"}],"required":["id"],
+                       "properties":{"id":{"type":"integer"},"child":{"$ref":"#/components/schemas/Node"}}}}}}
+            """;
+
+    @Test
+    void recursiveFieldMergedFromAllOfBranches() throws Exception {
+        JsonNode root = MAPPER.readTree(SPEC);
+        CompiledSchema schema = new SchemaCompiler(root).response("GET", "/nodes", "200", "application/json");
+        assertNotNull(schema);
+        CompiledSchema child = schema.properties.get("child");
+        assertNotNull(child);
+        // рекурсия замкнулась: вложенное поле — тот же узел
+        assertSame(child, child.properties.get("child"));
+
+        assertTrue(validate(schema, "{\"id\":1,\"child\":{\"id\":2,\"child\":{\"id\":3}}}").isEmpty());
+        List<String> errs = validate(schema, "{\"id\":1,\"child\":{\"child\":{\"id\":3}}}");
+        assertFalse(errs.isEmpty(), "нет id во вложенном узле");
+    }
+
+    private static List<String> validate(CompiledSchema schema, String json) throws Exception {
+        List<String> errs = new ArrayList<>();
+        try (JsonParser p = MAPPER.getFactory().createParser(json)) {
+            schema.validate(p, "$", errs, 50, 0);
+        }
+        return errs;
+    }
+}
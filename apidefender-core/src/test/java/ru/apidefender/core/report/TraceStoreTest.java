@@ -0,0 +1,83 @@
+package ru.apidefender.core.report;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TraceStoreTest {
+    // без null-полей и excerpt=false — так запись пишет сам TraceStore
+    private static final ObjectMapper MAPPER = new ObjectMapper().setSerializationInclusion(JsonInclude.Include.NON_NULL);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void roundTripWithBlobsAndSegmentRollOver() throws Exception {
+        String page404 = "<html><body>" + "Not Found ".repeat(50) + "</body></html>"; // блоб, общий для многих трейсов
+        List<TraceStore.Trace> traces = new ArrayList<>();
+        List<String> refs = new ArrayList<>();
+        // сегмент 4 КБ: сотня записей по несколько сотен байт обязательно сменит его
+        try (TraceStore store = new TraceStore(dir, 4096, 1024)) {
+            for (int i = 0; i < 100; i++) {
+                TraceStore.Trace t = new TraceStore.Trace();
+                t.url = "http://localhost/users/" + i;
+                t.method = i % 3 == 0 ? "POST" : "GET";
+                t.operation = i % 2 == 0 ? t.method + " /users/{id}" : null;
+                t.pathTemplate = "/users/{id}";
+                t.requestHeaders = Map.of("Authorization", "Bearer ***");
+                t.requestBody = i % 3 == 0 ? "{\"name\":\"Иван " + i + "\"}" : null;
+                t.status = i % 4 == 0 ? 404 : 200;
+                Map<String, String> resH = new LinkedHashMap<>();
+                resH.put("Content-Type", "application/json");
+                resH.put("X-Request-Id", "req-" + i + "-" + "x".repeat(120)); // заголовки крупнее BLOB_MIN — блобом
+                t.responseHeaders = resH;
+                t.responseBody = t.status == 404 ? page404 : "{\"id\":" + i + ",\"bio\":\"" + "ж".repeat(100 + i) + "\"}";
+                t.excerpt = i == 7;
+                traces.add(t);
+                refs.add(store.save(t));
+            }
+            store.close();
+            assertEquals(100, store.written());
+            assertEquals(0, store.dropped());
+            assertTrue(store.blobHits() > 0, "одинаковая страница 404 должна сохраниться один раз");
+            assertNull(store.save(traces.get(0)), "после close() трейс отбрасывается без ссылки");
+            assertEquals(1, store.dropped());
+        }
+
+        assertTrue(count(dir, "*" + TraceStore.SEGMENT_SUFFIX) > 1, "сегмент не сменился");
+        TraceReader reader = TraceReader.open(dir);
+        for (int i = 0; i < traces.size(); i++) {
+            assertNotNull(refs.get(i));
+            JsonNode read = reader.read(refs.get(i));
+            assertEquals(expected(traces.get(i)), read, "трейс " + i);
+        }
+        assertNull(reader.read("нет-такого"));
+    }
+
+    private static JsonNode expected(TraceStore.Trace t) {
+        ObjectNode n = MAPPER.valueToTree(t);
+        if (!t.excerpt) n.remove("excerpt");
+        return n;
+    }
+
+    private static int count(Path dir, String glob) throws Exception {
+        int n = 0;
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, glob)) {
+            for (Path ignored : ds) n++;
+        }
+        return n;
+    }
+}
@@ -1,9 +1,7 @@
 package ru.apidefender.core.report;
 
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.Map;
@@ -28,8 +26,9 @@ public class HtmlTemplates {
                 .map(e -> "<span class='sev sev-"+cls(e.getKey())+"'>"+escape(e.getKey())+": "+e.getValue()+"</span>")
                 .collect(Collectors.joining(" &#160; "));
 
+        TraceReader traces = TraceReader.open(r.meta.tracesDir != null ? Path.of(r.meta.tracesDir) : null);
         String issues = r.security.stream().map(i -> {
-            String details = renderDetails(r.meta.tracesDir, i.traceRef);
+            String details = renderDetails(traces, i.traceRef);
             String riskCell = "";
             try {
                 ru.apidefender.core.risk.RiskAssessor.Risk rk = ru.apidefender.core.risk.RiskAssessor.compute(i);
@@ -97,14 +96,11 @@ public class HtmlTemplates {
         + "</body></html>";
     }
 
-    private static String renderDetails(String tracesDir, String traceRef) {
+    private static String renderDetails(TraceReader traces, String traceRef) {
         if (traceRef == null) return "";
         try {
-            Path base = tracesDir != null? Path.of(tracesDir) : null;
-            Path file = base != null? base.resolve(traceRef) : null;
-            if (file != null && Files.isRegularFile(file)) {
-                ObjectMapper om = new ObjectMapper();
-                JsonNode t = om.readTree(Files.readString(file));
+            JsonNode t = traces.read(traceRef);
+            if (t != null) {
                 String req = "";
                 if (t.has("method") && t.has("url")) req += t.get("method").asText()+" "+t.get("url").asText()+"\n";
                 if (t.has("requestHeaders")) req += prettyKV(t.get("requestHeaders"));
@@ -0,0 +1,188 @@
+package ru.apidefender.core.report;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+
+// Слияние частичных JSON-отчётов (scan --shard i/N) в один. Части читаются по одной и сразу сворачиваются
+// в общий отчёт; находки, которые несколько процессов получили одинаково (глобальные проверки), не дублируются.
+// Средние (задержка, тайминги фаз, потоков на соединение) пересчитываются с весами, доля несоответствий — заново.
+public class ReportMerger {
+    private final ObjectMapper mapper = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private final ReportModel merged = new ReportModel();
+    private final Set<String> issueKeys = new HashSet<>();
+    private final Set<String> mismatchKeys = new HashSet<>();
+    private final Set<String> undocumentedKeys = new HashSet<>();
+    private final Map<List<String>, ReportModel.CoverageUnit> coverageUnits = new LinkedHashMap<>();
+    private double latencySum;
+    private double streamsSum;
+    private Instant started;
+    private Instant finished;
+    private int parts;
+    private int shardTotal; // N из «i/N» частей; полный отчёт без --shard — 1/1
+    private final Set<Integer> shards = new TreeSet<>();
+
+    public ReportModel read(Path file) throws IOException {
+        return mapper.readValue(file.toFile(), ReportModel.class);
+    }
+
+    public void add(ReportModel part) {
+        addShard(part.meta.shard);
+        if (parts++ == 0) {
+            merged.meta.preset = part.meta.preset;
+            merged.meta.target = part.meta.target;
+            merged.meta.openapiVersion = part.meta.openapiVersion;
+            merged.telemetry.httpProtocol = part.telemetry.httpProtocol;
+            merged.telemetry.presetParams.putAll(part.telemetry.presetParams);
+            merged.telemetry.presetParams.put("operationsPlanned", 0);
+        } else if (!Objects.equals(merged.meta.target, part.meta.target) || !Objects.equals(merged.meta.preset, part.meta.preset)) {
+            throw new IllegalArgumentException("Частичные отчёты сняты с разных целей или пресетов: "
+                    + merged.meta.target + " (" + merged.meta.preset + ") и " + part.meta.target + " (" + part.meta.preset + ")");
+        }
+        mergeMeta(part.meta);
+        for (ReportModel.SecurityIssue si : part.security) {
+            if (issueKeys.add(si.category + "|" + si.endpoint + "|" + si.method + "|" + si.description)) merged.security.add(si);
+        }
+        for (ReportModel.ContractMismatch cm : part.contract.mismatches) {
+            if (mismatchKeys.add(cm.method + " " + cm.endpoint + "|" + cm.issue)) merged.contract.mismatches.add(cm);
+        }
+        for (ReportModel.Undocumented u : part.contract.undocumented) {
+            if (undocumentedKeys.add(u.method + " " + u.path)) merged.contract.undocumented.add(u);
+        }
+        merged.operations.putAll(part.operations);
+        mergeTelemetry(part.telemetry);
+        mergeCoverage(part.coverage);
+    }
+
+    public ReportModel result() {
+        // без какой-то доли скан неполон: её операции и пути никто не проверял
+        merged.coverage.missingShards.clear();
+        for (int i = 1; i <= shardTotal; i++) if (!shards.contains(i)) merged.coverage.missingShards.add(i + "/" + shardTotal);
+        if (!merged.coverage.missingShards.isEmpty()) merged.coverage.complete = false;
+        ReportModel.Telemetry t = merged.telemetry;
+        t.avgLatencyMs = t.requestsTotal == 0 ? 0 : latencySum / t.requestsTotal;
+        t.streamsPerConnectionAvg = t.connectionsUsed == 0 ? 0 : streamsSum / t.connectionsUsed;
+        int eps = merged.meta.endpointsScanned;
+        t.contractMismatchRate = eps == 0 ? 0 : (double) merged.contract.mismatches.size() / (double) eps;
+        Map<String, Integer> counts = new HashMap<>();
+        for (ReportModel.SecurityIssue si : merged.security) counts.merge(si.category, 1, Integer::sum);
+        t.vulnCounts = counts;
+        merged.coverage.units = new ArrayList<>(coverageUnits.values());
+        if (started != null) merged.meta.startedAt = started.toString();
+        if (finished != null) merged.meta.finishedAt = finished.toString();
+        if (started != null && finished != null) merged.meta.durationMs = Duration.between(started, finished).toMillis();
+        return merged;
+    }
+
+    // Части должны быть разными долями одного разбиения: повтор доли или другое N удвоили бы
+    // счётчики и покрытие. Проверяется до слияния — отклонённая часть отчёт не меняет
+    private void addShard(String shard) {
+        int i = 1, n = 1;
+        if (shard != null) {
+            String[] sp = shard.split("/");
+            try {
+                i = Integer.parseInt(sp[0].trim());
+                n = Integer.parseInt(sp[1].trim());
+            } catch (Exception e) {
+                n = 0;
+            }
+            if (sp.length != 2 || n < 1 || i < 1 || i > n) throw new IllegalArgumentException("Неверная доля частичного отчёта: " + shard);
+        }
+        if (shardTotal != 0 && n != shardTotal) {
+            throw new IllegalArgumentException("Частичные отчёты разных разбиений: доля " + i + "/" + n + ", а предыдущие — из " + shardTotal);
+        }
+        if (shards.contains(i)) throw new IllegalArgumentException("Доля " + i + "/" + n + " передана повторно");
+        shardTotal = n;
+        shards.add(i);
+    }
+
+    private void mergeMeta(ReportModel.Meta m) {
+        merged.meta.endpointsScanned += m.endpointsScanned;
+        try {
+            Instant s = Instant.parse(m.startedAt);
+            if (started == null || s.isBefore(started)) started = s;
+            Instant f = Instant.parse(m.finishedAt);
+            if (finished == null || f.isAfter(finished)) finished = f;
+        } catch (Exception ignored) {}
+    }
+
+    private void mergeTelemetry(ReportModel.Telemetry p) {
+        ReportModel.Telemetry t = merged.telemetry;
+        latencySum += p.avgLatencyMs * p.requestsTotal;
+        t.requestsTotal += p.requestsTotal;
+        p.scannerAttempts.forEach((k, v) -> t.scannerAttempts.merge(k, v, Integer::sum));
+        p.scannerDurMs.forEach((k, v) -> t.scannerDurMs.merge(k, v, Long::sum));
+        Object planned = p.presetParams.get("operationsPlanned");
+        if (planned instanceof Number n) t.presetParams.merge("operationsPlanned", n.intValue(), (a, b) -> ((Number) a).intValue() + ((Number) b).intValue());
+        streamsSum += p.streamsPerConnectionAvg * p.connectionsUsed;
+        t.connectionsUsed += p.connectionsUsed;
+        p.connectionsByProtocol.forEach((k, v) -> t.connectionsByProtocol.merge(k, v, Integer::sum));
+        t.streamsPerConnectionMax = Math.max(t.streamsPerConnectionMax, p.streamsPerConnectionMax);
+        t.peakConcurrentStreams = Math.max(t.peakConcurrentStreams, p.peakConcurrentStreams);
+        t.throttledMs += p.throttledMs;
+        t.rateLimitBackoffs += p.rateLimitBackoffs;
+        p.rateLimitRps.forEach((k, v) -> t.rateLimitRps.merge(k, v, Math::min));
+        t.responseCacheHits += p.responseCacheHits;
+        t.responseCacheCoalesced += p.responseCacheCoalesced;
+        t.responseCacheMisses += p.responseCacheMisses;
+        p.timingsByScanner.forEach((k, v) -> t.timingsByScanner.merge(k, v, ReportMerger::mergeTimings));
+        p.timingsByEndpoint.forEach((k, v) -> t.timingsByEndpoint.merge(k, v, ReportMerger::mergeTimings));
+        p.probeUnits.forEach((k, v) -> t.probeUnits.merge(k, v, Long::sum));
+        t.traceBudgetBytes += p.traceBudgetBytes;
+        t.traceBytes += p.traceBytes;
+        t.traceBudgetExhausted |= p.traceBudgetExhausted;
+        p.tracesFull.forEach((k, v) -> t.tracesFull.merge(k, v, Long::sum));
+        p.tracesExcerpt.forEach((k, v) -> t.tracesExcerpt.merge(k, v, Long::sum));
+        p.tracesSampledOut.forEach((k, v) -> t.tracesSampledOut.merge(k, v, Long::sum));
+        p.tracesOverBudget.forEach((k, v) -> t.tracesOverBudget.merge(k, v, Long::sum));
+        t.tracesDropped += p.tracesDropped;
+    }
+
+    private void mergeCoverage(ReportModel.Coverage p) {
+        ReportModel.Coverage c = merged.coverage;
+        c.complete &= p.complete;
+        if (c.stoppedBy == null) c.stoppedBy = p.stoppedBy;
+        c.unitsCompleted += p.unitsCompleted;
+        c.unitsInterrupted += p.unitsInterrupted;
+        c.unitsSkipped += p.unitsSkipped;
+        c.unitsResumed += p.unitsResumed;
+        for (ReportModel.CoverageUnit u : p.units) {
+            ReportModel.CoverageUnit acc = coverageUnits.computeIfAbsent(List.of(String.valueOf(u.scanner), String.valueOf(u.operation)), k -> {
+                ReportModel.CoverageUnit n = new ReportModel.CoverageUnit();
+                n.scanner = u.scanner;
+                n.operation = u.operation;
+                return n;
+            });
+            acc.completed += u.completed;
+            acc.interrupted += u.interrupted;
+            acc.skipped += u.skipped;
+            acc.resumed += u.resumed;
+        }
+    }
+
+    // Средние по фазам складываются с весом числа вызовов
+    private static ReportModel.PhaseTimings mergeTimings(ReportModel.PhaseTimings a, ReportModel.PhaseTimings b) {
+        ReportModel.PhaseTimings r = new ReportModel.PhaseTimings();
+        long n = a.calls + b.calls;
+        r.calls = n;
+        r.failed = a.failed + b.failed;
+        r.reusedConnections = a.reusedConnections + b.reusedConnections;
+        r.dnsMs = weighted(a.dnsMs, a.calls, b.dnsMs, b.calls);
+        r.connectMs = weighted(a.connectMs, a.calls, b.connectMs, b.calls);
+        r.tlsMs = weighted(a.tlsMs, a.calls, b.tlsMs, b.calls);
+        r.requestWriteMs = weighted(a.requestWriteMs, a.calls, b.requestWriteMs, b.calls);
+        r.ttfbMs = weighted(a.ttfbMs, a.calls, b.ttfbMs, b.calls);
+        r.bodyReadMs = weighted(a.bodyReadMs, a.calls, b.bodyReadMs, b.calls);
+        r.totalMs = weighted(a.totalMs, a.calls, b.totalMs, b.calls);
+        return r;
+    }
+
+    private static double weighted(double a, long na, double b, long nb) {
+        return na + nb == 0 ? 0 : (a * na + b * nb) / (na + nb);
+    }
+}
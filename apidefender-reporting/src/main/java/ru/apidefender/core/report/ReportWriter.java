@@ -1,10 +1,7 @@
 package ru.apidefender.core.report;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.openhtmltopdf.pdfboxout.PdfRendererBuilder;
 
-import java.io.FileOutputStream;
-import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -24,6 +21,8 @@ public class ReportWriter {
         copy.meta = model.meta;
         copy.contract = model.contract;
         copy.telemetry = model.telemetry;
+        copy.coverage = model.coverage;
+        copy.operations = model.operations;
         for (ReportModel.SecurityIssue si : model.security) {
             ReportModel.SecurityIssue x = new ReportModel.SecurityIssue();
             x.id = si.id;
@@ -57,47 +56,9 @@ public class ReportWriter {
         Files.writeString(path, html, StandardCharsets.UTF_8);
     }
 
+    // Стек openhtmltopdf/PDFBox живёт в отдельном классе и загружается только при первом PDF
     public void writePdf(ReportModel model, Path path) throws Exception {
         if (path.getParent() != null) Files.createDirectories(path.getParent());
-        String html = HtmlTemplates.render(model);
-        try (OutputStream os = new FileOutputStream(path.toFile())) {
-            PdfRendererBuilder builder = new PdfRendererBuilder();
-            builder.useFastMode();
-            // Try to register common system fonts with Cyrillic support (ensures correct glyphs)
-            registerDejaVuFonts(builder);
-            builder.withHtmlContent(html, null);
-            builder.toStream(os);
-            builder.run();
-        }
-    }
-
-    private void registerDejaVuFonts(PdfRendererBuilder builder) {
-        try {
-            String[] candidates = new String[]{
-                    "/usr/share/fonts/truetype/dejavu/DejaVuSans.ttf",
-                    "/usr/share/fonts/truetype/dejavu/DejaVuSans-Bold.ttf",
-                    "/usr/share/fonts/truetype/dejavu/DejaVuSerif.ttf",
-                    "/usr/share/fonts/truetype/dejavu/DejaVuSerif-Bold.ttf",
-                    // Common Windows fonts with Cyrillic support
-                    "C:/Windows/Fonts/arial.ttf",
-                    "C:/Windows/Fonts/arialbd.ttf",
-                    "C:/Windows/Fonts/segoeui.ttf",
-                    "C:/Windows/Fonts/segoeuib.ttf"
-            };
-            for (String p : candidates) {
-                java.io.File f = new java.io.File(p);
-                if (f.exists()) {
-                    String family;
-                    if (p.toLowerCase().contains("dejavu")) {
-                        family = p.contains("Serif") ? "DejaVu Serif" : "DejaVu Sans";
-                    } else if (p.toLowerCase().contains("segoe")) {
-                        family = "Segoe UI";
-                    } else {
-                        family = "Arial";
-                    }
-                    builder.useFont(f, family);
-                }
-            }
-        } catch (Exception ignored) { }
+        PdfReport.render(HtmlTemplates.render(model), path);
     }
 }
@@ -0,0 +1,227 @@
+package ru.apidefender.scanners;
+
+import ru.apidefender.core.http.ScanDeadline;
+import ru.apidefender.core.report.ReportModel;
+import ru.apidefender.core.report.ScanJournal;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Планировщик проб: сканеры дробят работу на единицы (сканер, операция, проба) вместо одного длинного цикла.
+// У каждого сканера своя очередь, очереди обходятся по кругу — тяжёлый сканер (Injection) не вытесняет остальные.
+// Единицы исполняются на work-stealing пуле (ForkJoinPool) либо на виртуальных потоках,
+// одновременно выполняется не больше parallelism единиц. Единица не должна ждать другие единицы.
+// После срока скана очереди не запускаются: единицы помечаются пропущенными, а покрытие попадает в отчёт.
+// С журналом контрольных точек завершённые единицы отмечаются в нём, а при --resume не выполняются повторно;
+// проба — порядковый номер единицы в паре (сканер, операция), сканеры ставят единицы в детерминированном порядке.
+public class ProbeScheduler {
+    private static class Unit {
+        final String scanner;
+        final String operation;
+        final Runnable body;
+        final String journalKey; // null — единица не попадает в журнал и всегда выполняется заново
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+        Unit(String scanner, String operation, Runnable body, String journalKey) {
+            this.scanner = scanner; this.operation = operation; this.body = body; this.journalKey = journalKey;
+        }
+    }
+
+    // Итог по паре (сканер, операция): [выполнено, прервано сроком, пропущено, взято из журнала]
+    private static class Outcome {
+        final String scanner;
+        final String operation;
+        final LongAdder completed = new LongAdder();
+        final LongAdder interrupted = new LongAdder();
+        final LongAdder skipped = new LongAdder();
+        final LongAdder resumed = new LongAdder();
+        Outcome(String scanner, String operation) { this.scanner = scanner; this.operation = operation; }
+    }
+
+    private final Executor workers;
+    private final int parallelism;
+    private final ScanDeadline deadline;
+    private final ScanJournal journal;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<String, ArrayDeque<Unit>> queues = new LinkedHashMap<>();
+    private final ArrayDeque<String> ring = new ArrayDeque<>(); // сканеры с непустой очередью, в порядке обхода
+    private int running;
+    private final Map<List<String>, Long> probeOrdinals = new HashMap<>();
+    private final Map<String, LongAdder> unitsByScanner = new ConcurrentHashMap<>();
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder finished = new LongAdder(); // выполнены, пропущены или взяты из журнала
+    private final Map<List<String>, Outcome> outcomes = new ConcurrentHashMap<>();
+
+    public ProbeScheduler(Executor workers, int parallelism, ScanDeadline deadline) {
+        this(workers, parallelism, deadline, null);
+    }
+
+    public ProbeScheduler(Executor workers, int parallelism, ScanDeadline deadline, ScanJournal journal) {
+        this.workers = workers;
+        this.parallelism = Math.max(1, parallelism);
+        this.deadline = deadline;
+        this.journal = journal;
+    }
+
+    public boolean isCancelled() { return deadline != null && deadline.isCancelled(); }
+
+    public CompletableFuture<Void> submit(String scanner, String operation, Runnable body) {
+        return submit(scanner, operation, body, true);
+    }
+
+    // checkpoint=false — подготовительная единица (например, сбор ID): её результат нужен другим единицам,
+    // поэтому при возобновлении она выполняется заново
+    public CompletableFuture<Void> submit(String scanner, String operation, Runnable body, boolean checkpoint) {
+        Unit u;
+        submitted.increment();
+        lock.lock();
+        try {
+            String key = null;
+            if (journal != null && checkpoint) {
+                long probe = probeOrdinals.merge(List.of(scanner, operation), 1L, Long::sum) - 1;
+                key = ScanJournal.unitKey(scanner, operation, probe);
+            }
+            u = new Unit(scanner, operation, body, key);
+            if (key != null && journal.isDone(key)) {
+                outcome(u).resumed.increment();
+                finished.increment();
+                u.done.complete(null);
+                return u.done;
+            }
+            ArrayDeque<Unit> q = queues.computeIfAbsent(scanner, s -> new ArrayDeque<>());
+            q.add(u);
+            if (q.size() == 1) ring.add(scanner);
+        } finally {
+            lock.unlock();
+        }
+        drain();
+        return u.done;
+    }
+
+    public static CompletableFuture<Void> allOf(List<CompletableFuture<Void>> units) {
+        return CompletableFuture.allOf(units.toArray(new CompletableFuture[0]));
+    }
+
+    private void drain() {
+        List<Unit> start = new ArrayList<>();
+        lock.lock();
+        try {
+            while (running < parallelism && !ring.isEmpty()) {
+                String scanner = ring.poll();
+                ArrayDeque<Unit> q = queues.get(scanner);
+                start.add(q.poll());
+                if (!q.isEmpty()) ring.add(scanner);
+                running++;
+            }
+        } finally {
+            lock.unlock();
+        }
+        for (Unit u : start) {
+            try {
+                workers.execute(() -> runUnit(u));
+            } catch (RejectedExecutionException e) {
+                release();
+                skip(u);
+            }
+        }
+    }
+
+    // Снимает с очередей всё, что ещё не начато (после срока скана)
+    public void skipPending() {
+        List<Unit> dropped = new ArrayList<>();
+        lock.lock();
+        try {
+            for (ArrayDeque<Unit> q : queues.values()) { dropped.addAll(q); q.clear(); }
+            ring.clear();
+        } finally {
+            lock.unlock();
+        }
+        dropped.forEach(this::skip);
+    }
+
+    private void skip(Unit u) {
+        outcome(u).skipped.increment();
+        finished.increment();
+        u.done.complete(null);
+    }
+
+    private Outcome outcome(Unit u) {
+        return outcomes.computeIfAbsent(List.of(u.scanner, u.operation), k -> new Outcome(u.scanner, u.operation));
+    }
+
+    private void runUnit(Unit u) {
+        if (isCancelled()) {
+            release();
+            skip(u);
+            drain();
+            return;
+        }
+        Throwable failure = null;
+        if (u.journalKey != null) journal.enter(u.journalKey);
+        try {
+            u.body.run();
+        } catch (Throwable t) {
+            failure = t;
+        } finally {
+            if (u.journalKey != null) journal.leave();
+        }
+        unitsByScanner.computeIfAbsent(u.scanner, s -> new LongAdder()).increment();
+        // завершилась уже после срока — её запросы могли быть отменены на середине, в журнал она не попадает
+        if (isCancelled()) {
+            outcome(u).interrupted.increment();
+        } else {
+            outcome(u).completed.increment();
+            if (u.journalKey != null && failure == null) journal.unitDone(u.journalKey);
+        }
+        finished.increment();
+        release();
+        if (failure == null) u.done.complete(null); else u.done.completeExceptionally(failure);
+        drain();
+    }
+
+    private void release() {
+        lock.lock();
+        try {
+            running--;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Ход скана: сколько единиц поставлено и сколько уже закончено
+    public long unitsSubmitted() { return submitted.sum(); }
+    public long unitsFinished() { return finished.sum(); }
+
+    public void writeTo(ReportModel.Telemetry t) {
+        unitsByScanner.forEach((s, n) -> t.probeUnits.put(s, n.sum()));
+    }
+
+    public void writeTo(ReportModel.Coverage c) {
+        for (Outcome o : outcomes.values()) {
+            ReportModel.CoverageUnit cu = new ReportModel.CoverageUnit();
+            cu.scanner = o.scanner;
+            cu.operation = o.operation;
+            cu.completed = o.completed.sum();
+            cu.interrupted = o.interrupted.sum();
+            cu.skipped = o.skipped.sum();
+            cu.resumed = o.resumed.sum();
+            c.unitsResumed += cu.resumed;
+            c.unitsCompleted += cu.completed;
+            c.unitsInterrupted += cu.interrupted;
+            c.unitsSkipped += cu.skipped;
+            c.units.add(cu);
+        }
+        c.units.sort(Comparator.comparing((ReportModel.CoverageUnit cu) -> cu.scanner).thenComparing(cu -> cu.operation));
+        c.complete = c.unitsInterrupted == 0 && c.unitsSkipped == 0;
+    }
+}
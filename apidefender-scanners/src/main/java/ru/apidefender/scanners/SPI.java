@@ -2,11 +2,16 @@ package ru.apidefender.scanners;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import ru.apidefender.core.http.HttpClient;
+import ru.apidefender.core.http.ResponseSnapshot;
 import ru.apidefender.core.log.JsonlLogger;
+import ru.apidefender.core.openapi.OperationIndex;
+import ru.apidefender.core.openapi.PathRouter;
+import ru.apidefender.core.openapi.SchemaCompiler;
 import ru.apidefender.core.report.ReportModel;
 
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 public interface SPI {
     String getCategory();
@@ -19,6 +24,9 @@ public interface SPI {
         public final ReportModel report;
         public final boolean debug;
         public final JsonNode openapi;
+        public final OperationIndex operations; // операции спецификации: параметры, тела, ответы, security
+        public final SchemaCompiler schemas; // скомпилированные схемы ответов той же спецификации
+        public final PathRouter router; // шаблоны путей спецификации
         public final List<String> endpoints;
         public final String preset; // fast/full/aggressive
         public final int idorMax;
@@ -27,19 +35,33 @@ public interface SPI {
         public final String exploitDepth; // low|med|high
         public final int maxExploitOps;
         public final boolean safetySkipDelete;
-        public interface TraceSaver { String save(String url, String method, String reqBody, okhttp3.Response resp); }
+        public interface TraceSaver { String save(String url, String method, String reqBody, ResponseSnapshot resp); }
         public final TraceSaver traceSaver;
 
         public final List<String> publicPaths;
         public final boolean allowCorsWildcardPublic;
+        public final Executor executor; // где выполняются подзадачи сканеров (пул платформенных или виртуальные потоки)
+        public final ProbeScheduler probes;
+        public final String scanner; // имя сканера, от которого идут пробы (см. forScanner)
 
         public ScanContext(String baseUrl, HttpClient http, JsonlLogger log, ReportModel report,
-                           boolean debug, JsonNode openapi, List<String> endpoints, String preset,
+                           boolean debug, JsonNode openapi, OperationIndex operations, List<String> endpoints, String preset,
                            int idorMax, int injectionOps, int rateBurst, TraceSaver traceSaver,
                            List<String> publicPaths, boolean allowCorsWildcardPublic,
-                           String exploitDepth, int maxExploitOps, boolean safetySkipDelete) {
+                           String exploitDepth, int maxExploitOps, boolean safetySkipDelete, Executor executor,
+                           ProbeScheduler probes) {
+            this(baseUrl, http, log, report, debug, openapi, operations, endpoints, preset, idorMax, injectionOps, rateBurst, traceSaver,
+                    publicPaths, allowCorsWildcardPublic, exploitDepth, maxExploitOps, safetySkipDelete, executor, probes, null);
+        }
+
+        private ScanContext(String baseUrl, HttpClient http, JsonlLogger log, ReportModel report,
+                            boolean debug, JsonNode openapi, OperationIndex operations, List<String> endpoints, String preset,
+                            int idorMax, int injectionOps, int rateBurst, TraceSaver traceSaver,
+                            List<String> publicPaths, boolean allowCorsWildcardPublic,
+                            String exploitDepth, int maxExploitOps, boolean safetySkipDelete, Executor executor,
+                            ProbeScheduler probes, String scanner) {
             this.baseUrl = baseUrl; this.http = http; this.log = log; this.report = report; this.debug = debug;
-            this.openapi = openapi; this.endpoints = endpoints; this.preset = preset;
+            this.openapi = openapi; this.operations = operations; this.schemas = operations.schemas; this.router = operations.router; this.endpoints = endpoints; this.preset = preset;
             this.idorMax = idorMax; this.injectionOps = injectionOps; this.rateBurst = rateBurst;
             this.traceSaver = traceSaver;
             this.publicPaths = publicPaths;
@@ -47,7 +69,25 @@ public interface SPI {
             this.exploitDepth = exploitDepth;
             this.maxExploitOps = maxExploitOps;
             this.safetySkipDelete = safetySkipDelete;
+            this.executor = executor;
+            this.probes = probes;
+            this.scanner = scanner;
+        }
+        // Контекст конкретного сканера: запросы помечены его именем, пробы попадают в его очередь
+        public ScanContext forScanner(String name) {
+            return new ScanContext(baseUrl, http.forScanner(name), log, report, debug, openapi, operations, endpoints, preset, idorMax, injectionOps, rateBurst,
+                    traceSaver, publicPaths, allowCorsWildcardPublic, exploitDepth, maxExploitOps, safetySkipDelete, executor, probes, name);
+        }
+        // Одна единица работы (операция + проба) в планировщике
+        public CompletableFuture<Void> probe(String operation, Runnable unit) {
+            return probes.submit(scanner != null ? scanner : "-", operation, unit);
+        }
+        // Подготовительная единица: её результат нужен другим пробам, поэтому она не берётся из журнала при --resume
+        public CompletableFuture<Void> prepare(String operation, Runnable unit) {
+            return probes.submit(scanner != null ? scanner : "-", operation, unit, false);
         }
+        // Токен отмены: срок скана истёк — длинные циклы внутри единицы стоит прервать
+        public boolean cancelled() { return probes.isCancelled(); }
         public String url(String path){
             String b = baseUrl.endsWith("/")? baseUrl.substring(0, baseUrl.length()-1): baseUrl;
             return b + (path.startsWith("/")? path: "/"+path);
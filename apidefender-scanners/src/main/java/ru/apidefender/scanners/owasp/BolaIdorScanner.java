@@ -1,41 +1,52 @@
 package ru.apidefender.scanners.owasp;
 
-import okhttp3.Response;
+import ru.apidefender.core.http.ResponseSnapshot;
+import ru.apidefender.core.openapi.PathRouter;
 import ru.apidefender.core.report.ReportModel;
+import ru.apidefender.scanners.ProbeScheduler;
 import ru.apidefender.scanners.SPI;
 
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class BolaIdorScanner implements SPI {
     @Override public String getCategory() { return "IDOR"; }
 
     @Override
     public CompletableFuture<Void> run(ScanContext ctx) {
-        return CompletableFuture.runAsync(() -> {
-            try {
-                // Лимиты, зависящие от пресета: сдерживаем длительность IDOR
-                int harvestCap = switch (ctx.preset) { case "fast" -> 8; case "aggressive" -> 40; default -> 20; };
-                int poolCap    = switch (ctx.preset) { case "fast" -> 4; case "aggressive" -> 20; default -> 10; };
-                int xsubEpCap  = switch (ctx.preset) { case "fast" -> 8; case "aggressive" -> 30; default -> 16; };
-                int xsubIdsCap = switch (ctx.preset) { case "fast" -> 4; case "aggressive" -> 16; default -> 8; };
-                // Общий бюджет HTTP-попыток внутри IDOR (жёсткий стоп)
-                int opsCap     = switch (ctx.preset) { case "fast" -> 120; case "aggressive" -> 600; default -> 300; };
-                final int opsLimit = opsCap;
-                final int[] opsUsed = new int[]{0};
-                java.util.function.BooleanSupplier hasBudget = () -> opsUsed[0] < opsLimit;
-                java.util.function.Consumer<Integer> spend = (n) -> opsUsed[0] += n;
+        // Лимиты, зависящие от пресета: сдерживаем длительность IDOR
+        int harvestCap = switch (ctx.preset) { case "fast" -> 8; case "aggressive" -> 40; default -> 20; };
+        int poolCap    = switch (ctx.preset) { case "fast" -> 4; case "aggressive" -> 20; default -> 10; };
+        int xsubEpCap  = switch (ctx.preset) { case "fast" -> 8; case "aggressive" -> 30; default -> 16; };
+        int xsubIdsCap = switch (ctx.preset) { case "fast" -> 4; case "aggressive" -> 16; default -> 8; };
+        // Общий бюджет HTTP-попыток внутри IDOR (жёсткий стоп)
+        int opsCap     = switch (ctx.preset) { case "fast" -> 120; case "aggressive" -> 600; default -> 300; };
+        final int opsLimit = opsCap;
+        // пробы идут параллельно, поэтому бюджет — общий атомарный счётчик
+        AtomicInteger opsUsed = new AtomicInteger();
+        java.util.function.BooleanSupplier hasBudget = () -> opsUsed.get() < opsLimit && !ctx.cancelled();
+        java.util.function.Consumer<Integer> spend = opsUsed::addAndGet;
 
-                // Кандидаты с path-параметрами
-                List<String> candidates = new ArrayList<>();
-                ctx.openapi.path("paths").fieldNames().forEachRemaining(p -> { if (p.contains("{")) candidates.add(p); });
-                // Сбор ID из открытых GET ответов
-                List<String> harvested = harvestIds(ctx, harvestCap);
-                int max = ctx.idorMax;
-                int count = 0;
-                for (String p : candidates) {
-                    if (count++ >= max) break;
-                    if (!hasBudget.getAsBoolean()) break;
+        // Кандидаты с path-параметрами — только из путей этого скана (доля --shard, изменившиеся при --incremental)
+        List<PathRouter.Template> candidates = new ArrayList<>();
+        for (String p : ctx.endpoints) {
+            PathRouter.Template t = ctx.router.template(p);
+            if (t != null && t.templated()) candidates.add(t);
+        }
+        // Сбор ID из открытых GET ответов — отдельная единица, пробы по кандидатам планируются после неё.
+        // Сбор намеренно по всей спецификации: ID для пути шарда часто отдаёт коллекция из чужой доли;
+        // запросы идут через кэш эталонных GET и ограничены harvestCap
+        List<String> harvested = new ArrayList<>();
+        return ctx.prepare("harvest", () -> harvested.addAll(harvestIds(ctx, harvestCap))).thenCompose(v -> {
+            List<CompletableFuture<Void>> units = new ArrayList<>();
+            int max = ctx.idorMax;
+            int count = 0;
+            for (PathRouter.Template t : candidates) {
+                if (count++ >= max) break;
+                String p = t.path;
+                units.add(ctx.probe(p, () -> {
+                    if (!hasBudget.getAsBoolean()) return;
                     // Пул значений ограничиваем
                     List<String> pool = new ArrayList<>(harvested);
                     pool.addAll(List.of("1","2","3","42","99","999999","1234567890","00000001",
@@ -45,18 +56,17 @@ public class BolaIdorScanner implements SPI {
                     if (!pool.isEmpty()) {
                         String id1 = pool.get(0);
                         String id2 = pool.size() > 1 ? pool.get(1) : pool.get(0);
-                        String c1 = p.replaceAll("\\{[^/]+}", id1);
-                        String c2 = p.replaceAll("\\{[^/]+}", id2);
-                        if (hasBudget.getAsBoolean()) try (Response r1 = ctx.http.request("GET", ctx.url(c1), null, null)) {
+                        String c1 = t.expand(id1);
+                        String c2 = t.expand(id2);
+                        if (hasBudget.getAsBoolean()) try {
+                            ResponseSnapshot r1 = ctx.http.request("GET", ctx.url(c1), null, null);
                             spend.accept(1);
-                            if (!hasBudget.getAsBoolean()) {
-                                try { r1.close(); } catch (Exception ignored) {}
-                            }
-                            if (hasBudget.getAsBoolean()) try (Response r2 = ctx.http.request("GET", ctx.url(c2), null, null)) {
+                            if (hasBudget.getAsBoolean()) try {
+                                ResponseSnapshot r2 = ctx.http.request("GET", ctx.url(c2), null, null);
                                 spend.accept(1);
                             int k1 = r1.code(); int k2 = r2.code();
-                            String b1 = r1.peekBody(80_000).string();
-                            String b2 = r2.peekBody(80_000).string();
+                            String b1 = r1.bodyString(80_000);
+                            String b2 = r2.bodyString(80_000);
                             boolean ok = (k1>=200 && k1<300) && (k2>=200 && k2<300);
                             boolean diff = Math.abs(b1.length()-b2.length()) > (b1.length()*0.2 + 50);
                             if (ok && diff) {
@@ -72,8 +82,8 @@ public class BolaIdorScanner implements SPI {
                                 si.impact = "Несанкционированный доступ к чужим данным";
                                 si.recommendation = "Проверка владения ресурсом и авторизация на уровне ресурса";
                                 si.traceRef = ctx.traceSaver.save(ctx.url(c2), "GET", null, r2);
-                                synchronized (ctx.report.security){ ctx.report.security.add(si); }
-                                continue; // к следующему кандидату
+                                ctx.report.addIssue(si);
+                                return; // к следующему кандидату
                             }
                             } catch (Exception ignored) {}
                         } catch (Exception ignored) {}
@@ -81,9 +91,10 @@ public class BolaIdorScanner implements SPI {
                     // Если «свой/чужой» не сработал — пробуем по одному ID из пула
                     for (String val : pool) {
                         if (!hasBudget.getAsBoolean()) break;
-                        String crafted = p.replaceAll("\\{[^/]+}", val);
+                        String crafted = t.expand(val);
                         String url = ctx.url(crafted);
-                        try (Response r = ctx.http.request("GET", url, null, null)) {
+                        try {
+                            ResponseSnapshot r = ctx.http.request("GET", url, null, null);
                             spend.accept(1);
                             int code = r.code();
                             if (code >= 200 && code < 300) {
@@ -98,19 +109,21 @@ public class BolaIdorScanner implements SPI {
                                 si.impact = "Несанкционированный доступ к чужим данным";
                                 si.recommendation = "Проверка владения ресурсом и авторизация на уровне ресурса";
                                 si.traceRef = ctx.traceSaver.save(url, "GET", null, r);
-                                synchronized (ctx.report.security){ ctx.report.security.add(si); }
+                                ctx.report.addIssue(si);
                                 break;
                             }
                         } catch (Exception ignored) {}
                     }
-                }
+                }));
+            }
 
-                // Кросс-подстановка в query: userId/accountId/ownerId
-                List<String> idKeys = List.of("userId","accountId","ownerId","customerId");
-                int epCount = 0;
-                for (String path : ctx.endpoints) {
-                    if (epCount++ >= xsubEpCap) break;
-                    if (!hasBudget.getAsBoolean()) break;
+            // Кросс-подстановка в query: userId/accountId/ownerId
+            List<String> idKeys = List.of("userId","accountId","ownerId","customerId");
+            int epCount = 0;
+            for (String path : ctx.endpoints) {
+                if (epCount++ >= xsubEpCap) break;
+                units.add(ctx.probe(path, () -> {
+                    if (!hasBudget.getAsBoolean()) return;
                     String base = ctx.url(path);
                     for (String key : idKeys) {
                         int usedForKey = 0;
@@ -118,7 +131,8 @@ public class BolaIdorScanner implements SPI {
                             if (usedForKey++ >= xsubIdsCap) break;
                             if (!hasBudget.getAsBoolean()) break;
                             String url = base + (base.contains("?")? "&": "?") + key + "=" + java.net.URLEncoder.encode(id, java.nio.charset.StandardCharsets.UTF_8);
-                            try (Response r = ctx.http.request("GET", url, null, null)) {
+                            try {
+                                ResponseSnapshot r = ctx.http.request("GET", url, null, null);
                                 spend.accept(1);
                                 if (r.code() >= 200 && r.code() < 300) {
                                     ReportModel.SecurityIssue si = new ReportModel.SecurityIssue();
@@ -132,29 +146,29 @@ public class BolaIdorScanner implements SPI {
                                     si.impact = "Доступ к данным по произвольному идентификатору";
                                     si.recommendation = "Валидировать владение ресурсом, игнорировать внешние ID в query";
                                     si.traceRef = ctx.traceSaver.save(url, "GET", null, r);
-                                    synchronized (ctx.report.security){ ctx.report.security.add(si);} 
+                                    ctx.report.addIssue(si);
                                     break;
                                 }
                             } catch (Exception ignored) {}
                         }
                     }
-                }
-            } catch (Exception ignored) {}
+                }));
+            }
+            return ProbeScheduler.allOf(units);
         });
     }
 
     private List<String> harvestIds(ScanContext ctx, int budget){
         List<String> ids = new ArrayList<>();
         try {
-            java.util.Iterator<String> it = ctx.openapi.path("paths").fieldNames();
             int used = 0;
-            while (it.hasNext() && used < budget) {
-                String p = it.next();
-                if (p.contains("{")) continue;
-                String url = ctx.url(p);
-                try (Response r = ctx.http.request("GET", url, null, null)) {
-                    String body = r.peekBody(120_000).string();
-                    ids.addAll(extractIdsFromJson(body));
+            for (PathRouter.Template t : ctx.router.templates()) {
+                if (used >= budget) break;
+                if (t.templated()) continue;
+                String url = ctx.url(t.path);
+                try {
+                    ResponseSnapshot r = ctx.http.requestCached(url);
+                    ids.addAll(extractIdsFromJson(r));
                     used++;
                 } catch (Exception ignored) {}
             }
@@ -162,12 +176,10 @@ public class BolaIdorScanner implements SPI {
         return ids.stream().filter(s -> s!=null && !s.isBlank()).distinct().limit(50).toList();
     }
 
-    private List<String> extractIdsFromJson(String body){
+    private List<String> extractIdsFromJson(ResponseSnapshot r){
         List<String> out = new ArrayList<>();
         try {
-            com.fasterxml.jackson.databind.ObjectMapper om = new com.fasterxml.jackson.databind.ObjectMapper();
-            com.fasterxml.jackson.databind.JsonNode node = om.readTree(body);
-            walk(node, out);
+            walk(r.json(), out);
         } catch (Exception ignored) {}
         return out;
     }
@@ -1,11 +1,14 @@
 package ru.apidefender.scanners.owasp;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import okhttp3.Response;
+import com.fasterxml.jackson.core.JsonParser;
+import ru.apidefender.core.http.ResponseSnapshot;
+import ru.apidefender.core.openapi.CompiledSchema;
+import ru.apidefender.core.openapi.OperationIndex;
 import ru.apidefender.core.report.ReportModel;
+import ru.apidefender.scanners.ProbeScheduler;
 import ru.apidefender.scanners.SPI;
 
+import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
 
@@ -14,22 +17,28 @@ public class ExcessiveDataScanner implements SPI {
 
     @Override
     public CompletableFuture<Void> run(ScanContext ctx) {
-        return CompletableFuture.runAsync(() -> {
-            ObjectMapper mapper = new ObjectMapper();
-            for (String p : ctx.endpoints) {
-                String url = ctx.url(p);
-                try (Response r = ctx.http.request("GET", url, null, null)) {
+        List<CompletableFuture<Void>> units = new ArrayList<>();
+        for (String p : ctx.endpoints) {
+            OperationIndex.Operation get = ctx.operations.get("GET", p);
+            String url = ctx.url(p);
+            units.add(ctx.probe(p, () -> {
+                try {
+                    ResponseSnapshot r = ctx.http.requestCached(url);
                     String ctype = r.header("Content-Type");
                     if (ctype != null && ctype.contains("application/json")) {
-                        String body = r.peekBody(1_000_000).string();
-                        JsonNode node = mapper.readTree(body);
+                        String body = r.bodyString(1_000_000);
                         // найти schema
-                        JsonNode respNode = ctx.openapi.path("paths").path(p).path("get").path("responses");
-                        JsonNode target = respNode.has(Integer.toString(r.code())) ? respNode.get(Integer.toString(r.code())) : respNode.get("default");
-                        if (target != null) {
-                            JsonNode schema = target.path("content").path("application/json").path("schema");
-                            List<String> extra = new ArrayList<>();
-                            findUnknown(node, schema, "$.body", extra);
+                        OperationIndex.Response described = get == null ? null : get.response(r.code());
+                        CompiledSchema schema = described == null ? null : described.schema("application/json");
+                        List<String> extra = new ArrayList<>();
+                        // тело разбирается потоком, без дерева; не JSON (или обрезанное лимитом) — не проверяем
+                        try (JsonParser jp = r.jsonParser()) {
+                            if (jp.nextToken() == null) return;
+                            if (schema != null) schema.unknownFields(jp, "$.body", extra, 0); else jp.skipChildren();
+                        } catch (IOException e) {
+                            return;
+                        }
+                        if (described != null) {
                             if (!extra.isEmpty()) {
                                 ReportModel.SecurityIssue si = new ReportModel.SecurityIssue();
                                 si.id = UUID.randomUUID().toString();
@@ -42,7 +51,7 @@ public class ExcessiveDataScanner implements SPI {
                                 si.impact = "Избыточная выдача данных";
                                 si.recommendation = "Скрыть неописанные поля, скорректировать схему";
                                 si.traceRef = ctx.traceSaver.save(url, "GET", null, r);
-                                synchronized (ctx.report.security){ ctx.report.security.add(si);} 
+                                ctx.report.addIssue(si);
                             }
                             // PII detection (best-effort)
                             List<String> piiHits = detectPii(body);
@@ -58,31 +67,14 @@ public class ExcessiveDataScanner implements SPI {
                                 si2.impact = "Риск утечки персональных данных";
                                 si2.recommendation = "Исключить/маскировать PII в ответах, внедрить фильтрацию";
                                 si2.traceRef = ctx.traceSaver.save(url, "GET", null, r);
-                                synchronized (ctx.report.security){ ctx.report.security.add(si2);} 
+                                ctx.report.addIssue(si2);
                             }
                         }
                     }
                 } catch (Exception ignored) {}
-            }
-        });
-    }
-
-    private void findUnknown(JsonNode node, JsonNode schema, String path, List<String> out) {
-        if (schema == null || schema.isMissingNode()) return;
-        String type = schema.path("type").asText(null);
-        if (type != null && type.equals("object") && node.isObject()) {
-            JsonNode props = schema.path("properties");
-            boolean additional = schema.path("additionalProperties").asBoolean(true);
-            if (!additional && props.isObject()) {
-                node.fieldNames().forEachRemaining(fn -> { if (!props.has(fn)) out.add(path+":"+fn); });
-            }
-            if (props.isObject()) {
-                props.fieldNames().forEachRemaining(fn -> { if (node.has(fn)) findUnknown(node.get(fn), props.get(fn), path+"."+fn, out); });
-            }
-        } else if (type != null && type.equals("array") && node.isArray()) {
-            JsonNode items = schema.path("items");
-            for (int i=0;i<node.size();i++) findUnknown(node.get(i), items, path+"["+i+"]", out);
+            }));
         }
+        return ProbeScheduler.allOf(units);
     }
 
     private List<String> detectPii(String body) {
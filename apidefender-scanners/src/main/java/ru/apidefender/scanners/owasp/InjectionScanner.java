@@ -2,13 +2,15 @@ package ru.apidefender.scanners.owasp;
 
 import okhttp3.MediaType;
 import okhttp3.RequestBody;
-import okhttp3.Response;
+import ru.apidefender.core.http.ResponseSnapshot;
 import ru.apidefender.core.report.ReportModel;
+import ru.apidefender.scanners.ProbeScheduler;
 import ru.apidefender.scanners.SPI;
 
 import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class InjectionScanner implements SPI {
     @Override
@@ -47,25 +49,30 @@ public class InjectionScanner implements SPI {
 
     @Override
     public CompletableFuture<Void> run(ScanContext ctx) {
-        return CompletableFuture.runAsync(() -> {
-            int maxOps = ctx.injectionOps;
-            int tested = 0;
-            for (String p : ctx.endpoints) {
-                if (tested++ >= maxOps)
-                    break;
-                String base = ctx.url(p);
-                // тестируем GET c query param
-                for (String payload : PAYLOADS) {
+        int maxOps = ctx.injectionOps;
+        List<CompletableFuture<Void>> units = new ArrayList<>();
+        int tested = 0;
+        for (String p : ctx.endpoints) {
+            if (tested++ >= maxOps)
+                break;
+            String base = ctx.url(p);
+            // тестируем GET c query param: единица на payload, после первой находки по эндпоинту остальные пропускаются
+            AtomicBoolean found = new AtomicBoolean();
+            for (String payload : PAYLOADS) {
+                units.add(ctx.probe(p, () -> {
+                    if (found.get())
+                        return;
                     String url = base + (base.contains("?") ? "&" : "?") + "q="
                             + java.net.URLEncoder.encode(payload, StandardCharsets.UTF_8);
-                    long t0 = System.nanoTime();
-                    try (Response r = ctx.http.request("GET", url, null, null)) {
-                        long dt = (System.nanoTime() - t0) / 1_000_000L;
-                        String body = r.peekBody(200_000).string();
+                    try {
+                        ResponseSnapshot r = ctx.http.request("GET", url, null, null);
+                        // время от отправки до ответа: ожидание окна запросов и пауза после 429 сюда не входят
+                        long dt = r.latencyMillis();
+                        String body = r.bodyString(200_000);
                         boolean error = ERROR_SIGNS.stream().anyMatch(s -> body.contains(s));
                         boolean timing = (payload.toLowerCase().contains("pg_sleep")
                                 || payload.toLowerCase().contains("sleep")) && dt > 1500;
-                        if (error || timing) {
+                        if ((error || timing) && found.compareAndSet(false, true)) {
                             ReportModel.SecurityIssue si = new ReportModel.SecurityIssue();
                             si.id = UUID.randomUUID().toString();
                             si.category = getCategory();
@@ -94,23 +101,22 @@ public class InjectionScanner implements SPI {
                             si.traceRef = ctx.traceSaver.save(url, "GET", null, r);
                             if (notes.length() > 0)
                                 si.description += "; Подтверждение: " + notes;
-                            synchronized (ctx.report.security) {
-                                ctx.report.security.add(si);
-                            }
-                            break;
+                            ctx.report.addIssue(si);
                         }
                     } catch (Exception ignored) {
                     }
-                }
+                }));
+            }
 
-                // POST JSON c инъекциями
+            // POST JSON c инъекциями
+            units.add(ctx.probe(p, () -> {
                 Map<String, Object> obj = new LinkedHashMap<>();
                 obj.put("q", PAYLOADS.get(0));
                 obj.put("name", "test" + PAYLOADS.get(3));
                 String json = toJson(obj);
-                try (Response r = ctx.http.request("POST", base, Map.of("Content-Type", "application/json"),
-                        RequestBody.create(json, MediaType.parse("application/json")))) {
-                    String body = r.peekBody(200_000).string();
+                try {
+                    ResponseSnapshot r = ctx.http.request("POST", base, Map.of("Content-Type", "application/json"), RequestBody.create(json, MediaType.parse("application/json")));
+                    String body = r.bodyString(200_000);
                     boolean error = ERROR_SIGNS.stream().anyMatch(body::contains);
                     if (error) {
                         ReportModel.SecurityIssue si = new ReportModel.SecurityIssue();
@@ -129,16 +135,17 @@ public class InjectionScanner implements SPI {
                             tryExploitBoolean(ctx, base, p, notes);
                             si.description += notes.length() > 0 ? "; Подтверждение: " + notes : "";
                         }
-                        synchronized (ctx.report.security) {
-                            ctx.report.security.add(si);
-                        }
+                        ctx.report.addIssue(si);
                     }
                 } catch (Exception ignored) {
                 }
+            }));
 
-                // Header injection
-                try (Response r = ctx.http.request("GET", base, Map.of("X-Injection-Test", PAYLOADS.get(0)), null)) {
-                    String body = r.peekBody(200_000).string();
+            // Header injection
+            units.add(ctx.probe(p, () -> {
+                try {
+                    ResponseSnapshot r = ctx.http.request("GET", base, Map.of("X-Injection-Test", PAYLOADS.get(0)), null);
+                    String body = r.bodyString(200_000);
                     boolean error = ERROR_SIGNS.stream().anyMatch(body::contains);
                     if (error) {
                         ReportModel.SecurityIssue si = new ReportModel.SecurityIssue();
@@ -152,14 +159,13 @@ public class InjectionScanner implements SPI {
                         si.impact = "Манипуляции логикой через заголовки";
                         si.recommendation = "Санитизация и белые списки заголовков";
                         si.traceRef = ctx.traceSaver.save(base, "GET", null, r);
-                        synchronized (ctx.report.security) {
-                            ctx.report.security.add(si);
-                        }
+                        ctx.report.addIssue(si);
                     }
                 } catch (Exception ignored) {
                 }
-            }
-        });
+            }));
+        }
+        return ProbeScheduler.allOf(units);
     }
 
     private String toJson(Map<String, Object> map) {
@@ -176,12 +182,13 @@ public class InjectionScanner implements SPI {
             return;
         String url1 = base + (base.contains("?") ? "&" : "?") + "bb=1' AND 1=1 --";
         String url2 = base + (base.contains("?") ? "&" : "?") + "bb=1' AND 1=2 --";
-        try (Response r1 = ctx.http.request("GET", url1, null, null);
-                Response r2 = ctx.http.request("GET", url2, null, null)) {
+        try {
+            ResponseSnapshot r1 = ctx.http.request("GET", url1, null, null);
+            ResponseSnapshot r2 = ctx.http.request("GET", url2, null, null);
             int c1 = r1.code();
             int c2 = r2.code();
-            String b1 = r1.peekBody(40_000).string();
-            String b2 = r2.peekBody(40_000).string();
+            String b1 = r1.bodyString(40_000);
+            String b2 = r2.bodyString(40_000);
             boolean codeDiff = c1 != c2;
             boolean lenDiff = Math.abs(b1.length() - b2.length()) > (b1.length() * 0.2 + 50);
             double sim = ru.apidefender.scanners.owasp.InjectionUtils.jaccardSimilarity(b1, b2);
@@ -198,10 +205,11 @@ public class InjectionScanner implements SPI {
             return;
         String url1 = base + (base.contains("?") ? "&" : "?") + "bb=1' AND 1=1 --";
         String url2 = base + (base.contains("?") ? "&" : "?") + "bb=1' AND 1=2 --";
-        try (Response r1 = ctx.http.request("GET", url1, null, null);
-                Response r2 = ctx.http.request("GET", url2, null, null)) {
-            String b1 = r1.peekBody(40_000).string();
-            String b2 = r2.peekBody(40_000).string();
+        try {
+            ResponseSnapshot r1 = ctx.http.request("GET", url1, null, null);
+            ResponseSnapshot r2 = ctx.http.request("GET", url2, null, null);
+            String b1 = r1.bodyString(40_000);
+            String b2 = r2.bodyString(40_000);
             if (Math.abs(b1.length() - b2.length()) > (b1.length() * 0.2 + 50)) {
                 out.append("boolean-blind подтверждён (ответы различаются)");
             }
@@ -213,16 +221,18 @@ public class InjectionScanner implements SPI {
         if (ctx.maxExploitOps <= 0)
             return;
         String url = base + (base.contains("?") ? "&" : "?") + "u=' UNION SELECT current_user --";
-        try (Response r = ctx.http.request("GET", url, null, null)) {
-            String body = r.peekBody(80_000).string();
+        try {
+            ResponseSnapshot r = ctx.http.request("GET", url, null, null);
+            String body = r.bodyString(80_000);
             if (body.contains("postgres") || body.toLowerCase().contains("user")) {
                 out.append(", union‑extract: current_user в ответе");
             }
         } catch (Exception ignored) {
         }
         String url2 = base + (base.contains("?") ? "&" : "?") + "u=' UNION SELECT version() --";
-        try (Response r = ctx.http.request("GET", url2, null, null)) {
-            String body = r.peekBody(80_000).string();
+        try {
+            ResponseSnapshot r = ctx.http.request("GET", url2, null, null);
+            String body = r.bodyString(80_000);
             if (body.toLowerCase().contains("postgresql")) {
                 out.append(", version извлечена");
             }
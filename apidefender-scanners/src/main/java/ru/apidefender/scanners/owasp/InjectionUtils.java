@@ -1,6 +1,6 @@
 package ru.apidefender.scanners.owasp;
 
-import okhttp3.Response;
+import ru.apidefender.core.http.ResponseSnapshot;
 import ru.apidefender.scanners.SPI;
 
 public class InjectionUtils {
@@ -24,15 +24,17 @@ public class InjectionUtils {
         String urlEnd = " --";
         String refUrl = base + (base.contains("?")? "&": "?") + "ref=1";
         int refCode = 0; int refLen = 0;
-        try (Response rr = ctx.http.request("GET", refUrl, null, null)) {
+        try {
+            ResponseSnapshot rr = ctx.http.request("GET", refUrl, null, null);
             refCode = rr.code();
-            refLen = rr.peekBody(40_000).string().length();
+            refLen = rr.bodyString(40_000).length();
         } catch (Exception ignored) {}
-        for (int n=1; n<=maxN; n++) {
+        for (int n=1; n<=maxN && !ctx.cancelled(); n++) {
             String url = urlBase + n + urlEnd;
-            try (Response r = ctx.http.request("GET", url, null, null)) {
+            try {
+                ResponseSnapshot r = ctx.http.request("GET", url, null, null);
                 int code = r.code();
-                int len = r.peekBody(40_000).string().length();
+                int len = r.bodyString(40_000).length();
                 boolean similar = (code == refCode) && Math.abs(len-refLen) <= (refLen*0.15 + 50);
                 if (similar) {
                     lastOk = n;
@@ -48,7 +50,7 @@ public class InjectionUtils {
         if (ctx.maxExploitOps <= 0) return;
         for (String expr : java.util.List.of("current_user","version()")) {
             boolean ok = false;
-            for (int pos = 1; pos <= columns; pos++) {
+            for (int pos = 1; pos <= columns && !ctx.cancelled(); pos++) {
                 StringBuilder sb = new StringBuilder();
                 sb.append("u=' UNION SELECT ");
                 for (int i=1;i<=columns;i++) {
@@ -57,8 +59,9 @@ public class InjectionUtils {
                 }
                 sb.append(" --");
                 String url = base + (base.contains("?")? "&": "?") + sb;
-                try (Response r = ctx.http.request("GET", url, null, null)) {
-                    String body = r.peekBody(80_000).string().toLowerCase();
+                try {
+                    ResponseSnapshot r = ctx.http.request("GET", url, null, null);
+                    String body = r.bodyString(80_000).toLowerCase();
                     if ((expr.equals("current_user") && (body.contains("postgres") || body.contains("user"))) ||
                         (expr.equals("version()") && body.contains("postgresql"))) {
                         if (out.length()>0) out.append(", ");
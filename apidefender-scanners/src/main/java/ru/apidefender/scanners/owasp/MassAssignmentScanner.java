@@ -2,34 +2,42 @@ package ru.apidefender.scanners.owasp;
 
 import okhttp3.MediaType;
 import okhttp3.RequestBody;
-import okhttp3.Response;
+import ru.apidefender.core.http.ResponseSnapshot;
+import ru.apidefender.core.openapi.OperationIndex;
 import ru.apidefender.core.report.ReportModel;
+import ru.apidefender.scanners.ProbeScheduler;
 import ru.apidefender.scanners.SPI;
 
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class MassAssignmentScanner implements SPI {
     @Override public String getCategory() { return "MassAssignment"; }
 
     @Override
     public CompletableFuture<Void> run(ScanContext ctx) {
-        return CompletableFuture.runAsync(() -> {
-            for (String p : ctx.endpoints) {
-                var methods = ctx.openapi.path("paths").path(p);
-                if (!methods.has("post") && !methods.has("put") && !methods.has("patch")) continue;
-                String url = ctx.url(p);
+        AtomicBoolean found = new AtomicBoolean(); // как и раньше, хватает одной находки на скан
+        List<CompletableFuture<Void>> units = new ArrayList<>();
+        for (String p : ctx.endpoints) {
+            if (!acceptsBody(ctx.operations, p)) continue;
+            String url = ctx.url(p);
+            units.add(ctx.probe(p, () -> {
+                if (found.get()) return;
                 Map<String,Object> body = new LinkedHashMap<>();
                 body.put("username", "test");
                 body.put("isAdmin", true);
                 body.put("role", "admin");
                 body.put("balance", 1_000_000);
                 String json = toJson(body);
-                try (Response r = ctx.http.request("POST", url, Map.of("Content-Type","application/json"), RequestBody.create(json, MediaType.parse("application/json")))) {
-                    String rb = r.peekBody(200_000).string();
-                    if (rb.contains("isAdmin") || rb.contains("role") || rb.contains("balance")) {
+                try {
+                    ResponseSnapshot r = ctx.http.request("POST", url, Map.of("Content-Type","application/json"), RequestBody.create(json, MediaType.parse("application/json")));
+                    String rb = r.bodyString(200_000);
+                    if ((rb.contains("isAdmin") || rb.contains("role") || rb.contains("balance")) && found.compareAndSet(false, true)) {
                         ReportModel.SecurityIssue si = new ReportModel.SecurityIssue();
                         si.id = UUID.randomUUID().toString();
                         si.category = getCategory();
@@ -41,12 +49,19 @@ public class MassAssignmentScanner implements SPI {
                         si.impact = "Повышение привилегий/модификация критичных атрибутов";
                         si.recommendation = "Явное белое‑списочное биндинг полей";
                         si.traceRef = ctx.traceSaver.save(url, "POST", json, r);
-                        synchronized (ctx.report.security){ ctx.report.security.add(si);} 
-                        break;
+                        ctx.report.addIssue(si);
                     }
                 } catch (Exception ignored) {}
-            }
-        });
+            }));
+        }
+        return ProbeScheduler.allOf(units);
+    }
+
+    private static boolean acceptsBody(OperationIndex index, String path) {
+        for (OperationIndex.Operation op : index.at(path)) {
+            if (op.method.equals("POST") || op.method.equals("PUT") || op.method.equals("PATCH")) return true;
+        }
+        return false;
     }
 
     private String toJson(Map<String,Object> map){
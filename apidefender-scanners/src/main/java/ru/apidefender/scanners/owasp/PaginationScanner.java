@@ -1,7 +1,8 @@
 package ru.apidefender.scanners.owasp;
 
-import okhttp3.Response;
+import ru.apidefender.core.http.ResponseSnapshot;
 import ru.apidefender.core.report.ReportModel;
+import ru.apidefender.scanners.ProbeScheduler;
 import ru.apidefender.scanners.SPI;
 
 import java.util.*;
@@ -15,46 +16,50 @@ public class PaginationScanner implements SPI {
 
     @Override
     public CompletableFuture<Void> run(ScanContext ctx) {
-        return CompletableFuture.runAsync(() -> {
-            int max = switch (ctx.preset) {
-                case "fast" -> 8;
-                case "aggressive" -> 30;
-                default -> 16;
-            };
-            int tested = 0;
-            List<String> hints = List.of("list", "items", "transactions", "accounts", "events", "logs", "orders",
-                    "payments");
-            for (String p : ctx.endpoints) {
-                if (tested >= max)
+        int max = switch (ctx.preset) {
+            case "fast" -> 8;
+            case "aggressive" -> 30;
+            default -> 16;
+        };
+        List<CompletableFuture<Void>> units = new ArrayList<>();
+        int tested = 0;
+        List<String> hints = List.of("list", "items", "transactions", "accounts", "events", "logs", "orders",
+                "payments");
+        for (String p : ctx.endpoints) {
+            if (tested >= max)
+                break;
+            boolean candidate = false;
+            String low = p.toLowerCase();
+            for (String h : hints)
+                if (low.contains(h)) {
+                    candidate = true;
                     break;
-                boolean candidate = false;
-                String low = p.toLowerCase();
-                for (String h : hints)
-                    if (low.contains(h)) {
-                        candidate = true;
-                        break;
-                    }
-                if (!candidate)
-                    continue;
-                tested++;
+                }
+            if (!candidate)
+                continue;
+            tested++;
+            units.add(ctx.probe(p, () -> {
                 String base = ctx.url(p);
                 String l50 = base + (base.contains("?") ? "&" : "?") + "limit=50&page=1";
                 String l500 = base + (base.contains("?") ? "&" : "?") + "limit=500&page=1";
                 String l5000 = base + (base.contains("?") ? "&" : "?") + "limit=5000&page=1&size=5000";
                 long t50 = 0, t500 = 0, t5000 = 0;
                 int c50 = 0, c500 = 0, c5000 = 0;
-                try (Response r1 = ctx.http.request("GET", l50, null, null)) {
-                    t50 = r1.receivedResponseAtMillis() - r1.sentRequestAtMillis();
+                try {
+                    ResponseSnapshot r1 = ctx.http.request("GET", l50, null, null);
+                    t50 = r1.latencyMillis();
                     c50 = r1.code();
                 } catch (Exception ignored) {
                 }
-                try (Response r2 = ctx.http.request("GET", l500, null, null)) {
-                    t500 = r2.receivedResponseAtMillis() - r2.sentRequestAtMillis();
+                try {
+                    ResponseSnapshot r2 = ctx.http.request("GET", l500, null, null);
+                    t500 = r2.latencyMillis();
                     c500 = r2.code();
                 } catch (Exception ignored) {
                 }
-                try (Response r3 = ctx.http.request("GET", l5000, null, null)) {
-                    t5000 = r3.receivedResponseAtMillis() - r3.sentRequestAtMillis();
+                try {
+                    ResponseSnapshot r3 = ctx.http.request("GET", l5000, null, null);
+                    t5000 = r3.latencyMillis();
                     c5000 = r3.code();
                     boolean slow = t5000 > Math.max(1500, Math.max(t50, t500) * 5);
                     boolean err = c5000 >= 500 || c5000 == 429;
@@ -72,13 +77,12 @@ public class PaginationScanner implements SPI {
                         si.impact = "Риск DoS/перегрузки и утечка ресурсов на больших лимитах";
                         si.recommendation = "Ограничить max limit/size, внедрить защиту/страничную пагинацию";
                         si.traceRef = ctx.traceSaver.save(l5000, "GET", null, r3);
-                        synchronized (ctx.report.security) {
-                            ctx.report.security.add(si);
-                        }
+                        ctx.report.addIssue(si);
                     }
                 } catch (Exception ignored) {
                 }
-            }
-        });
+            }));
+        }
+        return ProbeScheduler.allOf(units);
     }
 }
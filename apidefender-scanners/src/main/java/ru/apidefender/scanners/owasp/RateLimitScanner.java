@@ -1,9 +1,11 @@
 package ru.apidefender.scanners.owasp;
 
-import okhttp3.Response;
+import ru.apidefender.core.http.ResponseSnapshot;
 import ru.apidefender.core.report.ReportModel;
 import ru.apidefender.scanners.SPI;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 
@@ -15,16 +17,28 @@ public class RateLimitScanner implements SPI {
 
     @Override
     public CompletableFuture<Void> run(ScanContext ctx) {
-        return CompletableFuture.runAsync(() -> {
-            if (ctx.endpoints.isEmpty())
-                return;
-            String p = ctx.endpoints.get(0); // тестируем первый доступный путь
+        if (ctx.endpoints.isEmpty())
+            return CompletableFuture.completedFuture(null);
+        String p = ctx.endpoints.get(0); // тестируем первый доступный путь
+        // одна единица: серия сама по себе параллельна, дробить её на пробы незачем
+        return ctx.probe(p, () -> {
             String url = ctx.url(p);
+            // свой ограничитель растянет серию до своего темпа — цель всплеска не увидит, и отсутствие 429
+            // ничего не скажет о её защите
+            if (ctx.http.clientThrottled(url)) {
+                ctx.log.info("RateLimit: проверка пропущена — запросы к цели сглаживает ограничитель частоты сканера (--rate-limit или снижение темпа после 429)");
+                return;
+            }
             int burst = ctx.rateBurst;
             int code429 = 0;
             boolean hasHeaders = false;
-            for (int i = 0; i < burst; i++) {
-                try (Response r = ctx.http.request("GET", url, null, null)) {
+            // вся серия уходит одновременно через неблокирующий API, без потока на каждый запрос
+            List<CompletableFuture<ResponseSnapshot>> inflight = new ArrayList<>();
+            for (int i = 0; i < burst; i++)
+                inflight.add(ctx.http.requestAsync("GET", url, null, null));
+            for (CompletableFuture<ResponseSnapshot> f : inflight) {
+                try {
+                    ResponseSnapshot r = f.join();
                     if (r.code() == 429)
                         code429++;
                     if (r.header("X-RateLimit-Remaining") != null || r.header("Retry-After") != null)
@@ -44,9 +58,7 @@ public class RateLimitScanner implements SPI {
                 si.impact = "Риск перебора/брютфорса";
                 si.recommendation = "Ввести ограничения по частоте или капчу";
                 si.traceRef = "ratelimit-checked-" + burst;
-                synchronized (ctx.report.security) {
-                    ctx.report.security.add(si);
-                }
+                ctx.report.addIssue(si);
             }
         });
     }
@@ -1,9 +1,11 @@
 package ru.apidefender.scanners.owasp;
 
-import okhttp3.Response;
+import ru.apidefender.core.http.ResponseSnapshot;
 import ru.apidefender.core.report.ReportModel;
+import ru.apidefender.scanners.ProbeScheduler;
 import ru.apidefender.scanners.SPI;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
@@ -17,12 +19,14 @@ public class VerboseErrorsScanner implements SPI {
 
     @Override
     public CompletableFuture<Void> run(ScanContext ctx) {
-        return CompletableFuture.runAsync(() -> {
-            for (String p : ctx.endpoints) {
-                String url = ctx.url(p + (p.contains("?")? "&": "?") + "_malformed=\uDC00");
-                try (Response r = ctx.http.request("GET", url, null, null)) {
+        List<CompletableFuture<Void>> units = new ArrayList<>();
+        for (String p : ctx.endpoints) {
+            String url = ctx.url(p + (p.contains("?")? "&": "?") + "_malformed=\uDC00");
+            units.add(ctx.probe(p, () -> {
+                try {
+                    ResponseSnapshot r = ctx.http.request("GET", url, null, null);
                     if (r.code() >= 500) {
-                        String body = r.peekBody(200_000).string();
+                        String body = r.bodyString(200_000);
                         boolean verbose = SIGNS.stream().anyMatch(body::contains);
                         if (verbose) {
                             ReportModel.SecurityIssue si = new ReportModel.SecurityIssue();
@@ -36,11 +40,12 @@ public class VerboseErrorsScanner implements SPI {
                             si.impact = "Раскрытие внутренних деталей реализации";
                             si.recommendation = "Скрывать детали ошибок, использовать дружественные сообщения";
                             si.traceRef = ctx.traceSaver.save(url, "GET", null, r);
-                            synchronized (ctx.report.security){ ctx.report.security.add(si);} 
+                            ctx.report.addIssue(si);
                         }
                     }
                 } catch (Exception ignored) {}
-            }
-        });
+            }));
+        }
+        return ProbeScheduler.allOf(units);
     }
 }
@@ -1,6 +1,6 @@
 package ru.apidefender.scanners.simple;
 
-import okhttp3.Response;
+import ru.apidefender.core.http.ResponseSnapshot;
 import ru.apidefender.core.report.ReportModel;
 import ru.apidefender.scanners.SPI;
 
@@ -22,8 +22,9 @@ public class SecurityHeadersScanner implements SPI {
 
     @Override
     public CompletableFuture<Void> run(ScanContext ctx) {
-        return CompletableFuture.runAsync(() -> {
-            try (Response r = ctx.http.request("GET", ctx.url("/"), null, null)) {
+        return ctx.probe("/", () -> {
+            try {
+                ResponseSnapshot r = ctx.http.requestCached(ctx.url("/"));
                 for (String h : REQUIRED) {
                     if (r.header(h) == null) {
                         ReportModel.SecurityIssue si = new ReportModel.SecurityIssue();
@@ -37,7 +38,7 @@ public class SecurityHeadersScanner implements SPI {
                         si.impact = "Пониженная защита браузера";
                         si.recommendation = "Добавить заголовок в ответы";
                         si.traceRef = ctx.traceSaver.save(ctx.url("/"), "GET", null, r);
-                        ctx.report.security.add(si);
+                        ctx.report.addIssue(si);
                     }
                 }
             } catch (Exception ignored) { }